@@ -0,0 +1,155 @@
+package bibtex;
+
+/**
+ * Rewrites the field lines of BibTeX entries (e.g., "booktitle = {Proc. of the 15th Conference},") scanning each line
+ * only once, character by character, and appending the result to a StringBuilder. In a single scan it can put ordinals
+ * in overscript (15th -> 15$^{\rm th}$), un-escape characters (\& -> &) and wrap URLs with LaTeX's url command. Used by
+ * the rewrite stage of BibtexPipeline (see BibtexStages).
+ *
+ * All the transformations are prepared when the rewriter is created, so no regular expressions are compiled and no
+ * intermediate strings are created while the lines are rewritten.
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class BibtexFieldRewriter {
+	/** Part of the ordinals to put in overscript, indexed by their last digit (all of them have two letters). */
+	private static final String[] ORDINAL_SUFFIXES = new String[] { null, "st", "nd", "rd", "th", "th", "th", "th", "th", "th" };
+
+	/** Suffix used for all ordinals with digits other than 1, 2 and 3 (and also accepted for these). */
+	private static final String DEFAULT_ORDINAL_SUFFIX = "th";
+
+	/** Strings that can start an URL. */
+	private static final String[] URL_STARTERS = new String[] { "http://", "https://", "ftp://" };
+
+	/** Chars that can end an URL. */
+	private static final String URL_ENDERS = " ,)}";
+
+	/** If ordinals should be put in overscript. */
+	private boolean doOverscript;
+
+	/** If URLs should be wrapped with LaTeX's url command. */
+	private boolean wrapUrls;
+
+	/** Escaped characters, as they appear in the BibTeX file. */
+	private String[] escaped;
+
+	/** Un-escaped versions of above characters. */
+	private char[] nonEscaped;
+
+	/** Characters that start an escaped character (first characters of the above), to avoid checking all of them. */
+	private String escapeStarters = "";
+
+	/** Constructor. */
+	public BibtexFieldRewriter(boolean doOverscript, boolean wrapUrls, String[] escaped, char[] nonEscaped) {
+		if (escaped.length != nonEscaped.length) throw new IllegalArgumentException("Each escaped character should have its un-escaped version.");
+		this.doOverscript = doOverscript;
+		this.wrapUrls = wrapUrls;
+		this.escaped = escaped;
+		this.nonEscaped = nonEscaped;
+		for (String esc : escaped) if (escapeStarters.indexOf(esc.charAt(0)) == -1) escapeStarters += esc.charAt(0);
+	}
+
+	/** Returns the key of a field line, i.e., what comes before the first space or equals sign. */
+	public static String getKey(CharSequence line) {
+		int i = 0, len = line.length();
+		while (i < len && line.charAt(i) != ' ' && line.charAt(i) != '=') i++;
+		return line.subSequence(0, i).toString();
+	}
+
+	/** Rewrites a field line, putting ordinals in overscript, un-escaping characters and wrapping URLs. */
+	public void rewrite(CharSequence line, StringBuilder out) {
+		scan(line, 0, line.length(), out, true);
+	}
+
+	/** Rewrites a field line, only putting ordinals in overscript. */
+	public void rewriteOrdinals(CharSequence line, StringBuilder out) {
+		scan(line, 0, line.length(), out, false);
+	}
+
+	/** Un-escapes the characters of part of a text. */
+	public void unescape(CharSequence text, int from, int to, StringBuilder out) {
+		for (int i = from; i < to;) {
+			int consumed = appendUnescaped(text, i, to, out);
+			if (consumed == 0) out.append(text.charAt(i++));
+			else i += consumed;
+		}
+	}
+
+	/** Scans part of a line, appending it rewritten. Characters are un-escaped and URLs wrapped only if all is true. */
+	private void scan(CharSequence line, int from, int to, StringBuilder out, boolean all) {
+		int i = from;
+		while (i < to) {
+			char c = line.charAt(i);
+
+			// Ordinals: a digit followed by its suffix.
+			if (doOverscript && c >= '1' && c <= '9') {
+				String suffix = ordinalSuffix(line, i, to);
+				if (suffix != null) {
+					out.append(c).append("$^{\\rm ").append(suffix).append("}$");
+					i += 1 + suffix.length();
+					continue;
+				}
+			}
+
+			if (all) {
+				// Escaped characters.
+				int consumed = appendUnescaped(line, i, to, out);
+				if (consumed > 0) {
+					i += consumed;
+					continue;
+				}
+
+				// URLs: copied (un-escaped) up to one of the ending chars and wrapped.
+				if (wrapUrls && startsUrl(line, i)) {
+					out.append("\\url{");
+					while (i < to && URL_ENDERS.indexOf(line.charAt(i)) == -1) {
+						consumed = appendUnescaped(line, i, to, out);
+						if (consumed == 0) out.append(line.charAt(i++));
+						else i += consumed;
+					}
+					out.append('}');
+					continue;
+				}
+			}
+
+			out.append(c);
+			i++;
+		}
+	}
+
+	/** Returns the ordinal suffix that follows the digit at the given position, or null if there isn't one. */
+	private static String ordinalSuffix(CharSequence line, int idx, int to) {
+		if (idx + 3 > to) return null;
+		String suffix = ORDINAL_SUFFIXES[line.charAt(idx) - '0'];
+		if (regionMatches(line, idx + 1, suffix)) return suffix;
+		if (regionMatches(line, idx + 1, DEFAULT_ORDINAL_SUFFIX)) return DEFAULT_ORDINAL_SUFFIX;
+		return null;
+	}
+
+	/** If an escaped character starts at the given position, appends its un-escaped version and returns its length. */
+	private int appendUnescaped(CharSequence text, int idx, int to, StringBuilder out) {
+		if (escapeStarters.indexOf(text.charAt(idx)) == -1) return 0;
+		for (int e = 0; e < escaped.length; e++) {
+			if (idx + escaped[e].length() <= to && regionMatches(text, idx, escaped[e])) {
+				out.append(nonEscaped[e]);
+				return escaped[e].length();
+			}
+		}
+		return 0;
+	}
+
+	/** Checks if an URL starts at the given position. */
+	private static boolean startsUrl(CharSequence line, int idx) {
+		if (line.charAt(idx) != 'h' && line.charAt(idx) != 'f') return false;
+		for (String starter : URL_STARTERS) if (regionMatches(line, idx, starter)) return true;
+		return false;
+	}
+
+	/** Checks if the text contains the given string at the given position. */
+	static boolean regionMatches(CharSequence text, int idx, String str) {
+		if (idx + str.length() > text.length()) return false;
+		for (int i = 0; i < str.length(); i++) if (text.charAt(idx + i) != str.charAt(i)) return false;
+		return true;
+	}
+}
@@ -0,0 +1,322 @@
+package bibtex;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import sysmap.MinHashSimilarityEngine;
+import util.TitleNormalizer;
+import bibtex.domain.ParsedBibtexEntry;
+
+/**
+ * Finds the entries that refer to the same publication in BibTeX files from different origins (e.g., Mendeley, the
+ * .bib files of a lab and the ones generated from Lattes CVs) and merges each group of duplicates in a single entry.
+ *
+ * Duplicates are found with three indexes, all of them hashed so the number of entries doesn't make the merge
+ * quadratic: the DOI (normalized, without the resolver URL), the normalized title with the year and, for titles that
+ * differ in punctuation, accents or typos, the n-gram similarity of the titles (using the MinHash/LSH engine of the
+ * systematic mapping scripts, see MinHashSimilarityEngine). Groups are formed transitively (union-find), but two
+ * groups are not joined by title or similarity if they have different DOIs or if the years of the joined group would
+ * be further apart than the tolerance (checked for the whole group, so years can't chain one after the other). Also,
+ * entries of the same file are considered different publications unless they have the same DOI or the same type, title
+ * and year. Similar titles are compared in order of the difference of their years, so the entries of a publication are
+ * grouped before the ones of the next edition of the same venue are compared to them.
+ *
+ * The merged entry has all the fields of the entries in the group. When more than one entry has a field, its value is
+ * taken from the entry whose file comes first in the precedence of that field, if configured, or in the order in which
+ * the files were given otherwise. The type and key are taken from the entry of the first file. The keys that are not kept
+ * are reported as aliases of the key of the merged entry (see getAliases()), so citations can be updated.
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class BibtexMerger {
+	/** Prefixes of DOIs that are removed before comparing them (resolver URLs and "doi:"). */
+	private static final Pattern DOI_PREFIX_PATTERN = Pattern.compile("^(?:https?://(?:dx\\.)?doi\\.org/|doi:\\s*)", Pattern.CASE_INSENSITIVE);
+
+	/** Files of the entries, in order of precedence. */
+	private Map<String, Integer> sourceRanks = new HashMap<>();
+
+	/** Files of the entries, in order of precedence, for the fields that have their own. */
+	private Map<String, Map<String, Integer>> fieldSourceRanks = new HashMap<>();
+
+	/** Engine that finds similar titles. */
+	private MinHashSimilarityEngine similarityEngine;
+
+	/** Maximum difference between the years of the entries of a group merged by title or similarity. */
+	private int yearTolerance;
+
+	/** Entries to be merged, in the order they were added. */
+	private List<ParsedBibtexEntry> entries = new ArrayList<>();
+
+	/** Parents of the entries in the union-find forest of groups of duplicates. */
+	private int[] parents;
+
+	/** DOI of each group (kept at its root), or null if none of its entries has one. */
+	private String[] groupDois;
+
+	/** Smallest and largest years of the entries of each group (kept at its root), ignoring entries without year. */
+	private int[] minYears, maxYears;
+
+	/** Files of the entries of each group (kept at its root), as indexes of the files. */
+	private BitSet[] groupSources;
+
+	/** Type of the entries of each group (kept at its root), or null if they have different types. */
+	private String[] groupTypes;
+
+	/** Number of entries merged because of each index. */
+	private int mergedByDoi, mergedByTitle, mergedBySimilarity;
+
+	/** Number of merges refused because of different DOIs, entries of the same file or years too far apart. */
+	private int refused;
+
+	/** Descriptions of the merges, for reports. */
+	private List<String> merges = new ArrayList<>();
+
+	/** Keys that were not kept, with their files and the keys of the entries they were merged into or renamed to. */
+	private List<String> aliases = new ArrayList<>();
+
+	/** Constructor. Sources are the names of the files, in order of precedence. */
+	public BibtexMerger(List<String> sources, double similarityThreshold, int yearTolerance) {
+		for (String source : sources) sourceRanks.put(source, sourceRanks.size());
+		similarityEngine = new MinHashSimilarityEngine(similarityThreshold, yearTolerance);
+		this.yearTolerance = yearTolerance;
+	}
+
+	/** Sets the precedence of the files (names, in order) for a field. Files not given come after, in their usual order. */
+	public void setFieldPrecedence(String field, List<String> sources) {
+		Map<String, Integer> ranks = new HashMap<>();
+		for (String source : sources) ranks.put(source, ranks.size());
+		fieldSourceRanks.put(field.toLowerCase(), ranks);
+	}
+
+	/** Adds entries to be merged. */
+	public void addAll(List<ParsedBibtexEntry> newEntries) {
+		entries.addAll(newEntries);
+	}
+
+	/** Finds the groups of duplicates and returns the merged entries, in the order their first entries were added. */
+	public List<ParsedBibtexEntry> merge() {
+		int size = entries.size();
+		parents = new int[size];
+		groupDois = new String[size];
+		minYears = new int[size];
+		maxYears = new int[size];
+		groupSources = new BitSet[size];
+		groupTypes = new String[size];
+		Map<String, Integer> sourceIds = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			ParsedBibtexEntry entry = entries.get(i);
+			parents[i] = i;
+			int year = entry.getYear();
+			minYears[i] = (year == 0) ? Integer.MAX_VALUE : year;
+			maxYears[i] = (year == 0) ? Integer.MIN_VALUE : year;
+			Integer sourceId = sourceIds.get(entry.getSource());
+			if (sourceId == null) sourceIds.put(entry.getSource(), sourceId = sourceIds.size());
+			groupSources[i] = new BitSet();
+			groupSources[i].set(sourceId);
+			groupTypes[i] = entry.getType();
+		}
+
+		// Indexes the entries by DOI, joining the ones with the same DOI.
+		Map<String, Integer> doiIndex = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			String doi = DOI_PREFIX_PATTERN.matcher(entries.get(i).getPlainField("doi").toLowerCase()).replaceFirst("");
+			if (!doi.isEmpty()) {
+				groupDois[i] = doi;
+				Integer first = doiIndex.get(doi);
+				if (first == null) doiIndex.put(doi, i);
+				else if (union(first, i)) mergedByDoi++;
+			}
+		}
+
+		// Indexes the entries by normalized title and year, joining each one with the first entry with the same key it can
+		// be joined with.
+		Map<String, List<Integer>> titleIndex = new HashMap<>();
+		List<String> titles = new ArrayList<>();
+		List<Integer> titleEntries = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			ParsedBibtexEntry entry = entries.get(i);
+			String title = entry.getPlainField("title");
+			String normalized = TitleNormalizer.normalize(title);
+			if (!normalized.isEmpty()) {
+				String key = entry.getYear() + " " + normalized;
+				List<Integer> sameKey = titleIndex.get(key);
+				if (sameKey == null) titleIndex.put(key, sameKey = new ArrayList<>(2));
+				for (int other : sameKey) {
+					if (find(other) == find(i)) break;
+					if (unionIfCompatible(other, i, false)) {
+						mergedByTitle++;
+						break;
+					}
+				}
+				sameKey.add(i);
+				titles.add(normalized);
+				titleEntries.add(i);
+			}
+		}
+
+		// Joins the entries with similar titles, the ones with closer years first.
+		final int[] years = new int[titles.size()];
+		for (int i = 0; i < years.length; i++) years[i] = entries.get(titleEntries.get(i)).getYear();
+		List<int[]> pairs = similarityEngine.findDuplicates(titles, years);
+		Collections.sort(pairs, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				return Integer.compare(Math.abs(years[a[0]] - years[a[1]]), Math.abs(years[b[0]] - years[b[1]]));
+			}
+		});
+		for (int[] pair : pairs) if (unionIfCompatible(titleEntries.get(pair[0]), titleEntries.get(pair[1]), true)) mergedBySimilarity++;
+
+		// Collects the groups, in order, and merges each of them.
+		Map<Integer, List<ParsedBibtexEntry>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			int root = find(i);
+			List<ParsedBibtexEntry> group = groups.get(root);
+			if (group == null) groups.put(root, group = new ArrayList<>());
+			group.add(entries.get(i));
+		}
+		List<ParsedBibtexEntry> merged = new ArrayList<>(groups.size());
+		Set<String> keys = new HashSet<>();
+		for (List<ParsedBibtexEntry> group : groups.values()) merged.add(mergeGroup(group, keys));
+		return merged;
+	}
+
+	/** Merges a group of duplicates, making sure the key of the merged entry is not in the given set (and adding it). */
+	private ParsedBibtexEntry mergeGroup(List<ParsedBibtexEntry> group, Set<String> keys) {
+		// Sorts the entries by the precedence of their files (stable, so entries of the same file keep their order).
+		List<ParsedBibtexEntry> sorted = new ArrayList<>(group);
+		Collections.sort(sorted, precedenceComparator(sourceRanks));
+		ParsedBibtexEntry primary = sorted.get(0);
+
+		// Makes sure keys are unique, as different publications might have the same key in different files.
+		String key = primary.getKey();
+		for (int n = 2; !keys.add(key); n++) key = primary.getKey() + "-" + n;
+		for (ParsedBibtexEntry entry : sorted) if (!entry.getKey().equals(key)) aliases.add(String.format("%s (%s) -> %s", entry.getKey(), entry.getSource(), key));
+		if (group.size() == 1 && key.equals(primary.getKey())) return primary;
+
+		// Collects the names of the fields, in order, and takes each value from the file with the highest precedence.
+		ParsedBibtexEntry result = new ParsedBibtexEntry(primary.getType(), key, primary.getSource());
+		Set<String> names = new LinkedHashSet<>();
+		for (ParsedBibtexEntry entry : sorted) names.addAll(entry.getFields().keySet());
+		for (String name : names) {
+			Map<String, Integer> ranks = fieldSourceRanks.get(name);
+			List<ParsedBibtexEntry> candidates = sorted;
+			if (ranks != null) {
+				candidates = new ArrayList<>(sorted);
+				Collections.sort(candidates, precedenceComparator(ranks));
+			}
+			for (ParsedBibtexEntry entry : candidates) if (entry.getField(name) != null) {
+				result.getFields().put(name, entry.getField(name));
+				break;
+			}
+		}
+
+		if (group.size() > 1) merges.add(String.format("%s <- %s", key, sorted));
+		return result;
+	}
+
+	/** Orders entries by the rank of their files, using the usual order for files that are not ranked. */
+	private Comparator<ParsedBibtexEntry> precedenceComparator(final Map<String, Integer> ranks) {
+		return new Comparator<ParsedBibtexEntry>() {
+			@Override
+			public int compare(ParsedBibtexEntry a, ParsedBibtexEntry b) {
+				int cmp = Integer.compare(rank(ranks, a), rank(ranks, b));
+				return (cmp != 0) ? cmp : Integer.compare(rank(sourceRanks, a), rank(sourceRanks, b));
+			}
+		};
+	}
+
+	/** Returns the rank of the file of an entry, or the lowest possible rank if the file is not ranked. */
+	private static int rank(Map<String, Integer> ranks, ParsedBibtexEntry entry) {
+		Integer rank = ranks.get(entry.getSource());
+		return (rank == null) ? Integer.MAX_VALUE : rank;
+	}
+
+	/** Finds the root of the group of an entry, halving the path on the way. */
+	private int find(int i) {
+		while (parents[i] != i) i = parents[i] = parents[parents[i]];
+		return i;
+	}
+
+	/** Joins the groups of two entries, returning false if they were already in the same group. */
+	private boolean union(int i, int j) {
+		int rootI = find(i), rootJ = find(j);
+		if (rootI == rootJ) return false;
+
+		// The root is always the entry that was added first, so groups keep the order of their first entries.
+		int root = Math.min(rootI, rootJ), other = Math.max(rootI, rootJ);
+		parents[other] = root;
+		if (groupDois[root] == null) groupDois[root] = groupDois[other];
+		minYears[root] = Math.min(minYears[root], minYears[other]);
+		maxYears[root] = Math.max(maxYears[root], maxYears[other]);
+		groupSources[root].or(groupSources[other]);
+		if (groupTypes[root] != null && !groupTypes[root].equals(groupTypes[other])) groupTypes[root] = null;
+		return true;
+	}
+
+	/**
+	 * Joins the groups of two entries found by title or similarity, unless they can't be the same publication: they have
+	 * different DOIs, the years of the joined group would be too far apart or they have entries of the same file and were
+	 * found by similarity or have different types. Returns false if they were not joined.
+	 */
+	private boolean unionIfCompatible(int i, int j, boolean bySimilarity) {
+		int rootI = find(i), rootJ = find(j);
+		if (rootI == rootJ) return false;
+
+		int minYear = Math.min(minYears[rootI], minYears[rootJ]), maxYear = Math.max(maxYears[rootI], maxYears[rootJ]);
+		boolean differentDois = (groupDois[rootI] != null) && (groupDois[rootJ] != null) && !groupDois[rootI].equals(groupDois[rootJ]);
+		boolean sameType = (groupTypes[rootI] != null) && groupTypes[rootI].equals(groupTypes[rootJ]);
+		boolean sameSource = groupSources[rootI].intersects(groupSources[rootJ]) && (bySimilarity || !sameType);
+		boolean yearsApart = (minYear <= maxYear) && (maxYear - minYear > yearTolerance);
+		if (differentDois || sameSource || yearsApart) {
+			refused++;
+			return false;
+		}
+		return union(rootI, rootJ);
+	}
+
+	/** Number of entries added. */
+	public int size() {
+		return entries.size();
+	}
+
+	/** Getter for mergedByDoi. */
+	public int getMergedByDoi() {
+		return mergedByDoi;
+	}
+
+	/** Getter for mergedByTitle. */
+	public int getMergedByTitle() {
+		return mergedByTitle;
+	}
+
+	/** Getter for mergedBySimilarity. */
+	public int getMergedBySimilarity() {
+		return mergedBySimilarity;
+	}
+
+	/** Getter for refused. */
+	public int getRefused() {
+		return refused;
+	}
+
+	/** Getter for merges. */
+	public List<String> getMerges() {
+		return merges;
+	}
+
+	/** Getter for aliases. */
+	public List<String> getAliases() {
+		return aliases;
+	}
+}
@@ -0,0 +1,160 @@
+package bibtex;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import bibtex.domain.ParsedBibtexEntry;
+
+/**
+ * Reads the entries of a BibTeX file, keeping the values of their fields exactly as they are in the file. Unlike the
+ * line-based processing of the Mendeley fixers, values can span many lines: brackets are counted to find where they
+ * end, and quoted values, bare values (e.g., year = 2015) and concatenations with # are also accepted. Comment,
+ * preamble and string blocks are skipped. If an entry is malformed, the fields that could be read are kept and the
+ * parser moves on to the next entry (the next line starting with @).
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class BibtexParser {
+	/** Contents of the file. */
+	private String text;
+
+	/** Name of the file, recorded in the entries. */
+	private String source;
+
+	/** Position of the next character to be read. */
+	private int pos;
+
+	/** Constructor. */
+	private BibtexParser(String text, String source) {
+		this.text = text;
+		this.source = source;
+	}
+
+	/** Reads the entries of a file. */
+	public static List<ParsedBibtexEntry> parse(File file) throws IOException {
+		StringBuilder builder = new StringBuilder((int) file.length());
+		try (Reader reader = new FileReader(file)) {
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer)) != -1) builder.append(buffer, 0, read);
+		}
+		return new BibtexParser(builder.toString(), file.getName()).parseEntries();
+	}
+
+	/** Reads all the entries. */
+	private List<ParsedBibtexEntry> parseEntries() {
+		List<ParsedBibtexEntry> entries = new ArrayList<>();
+		while ((pos = text.indexOf('@', pos)) != -1) {
+			pos++;
+			String type = readName().toLowerCase();
+			skipWhitespace();
+			if (pos >= text.length() || (text.charAt(pos) != '{' && text.charAt(pos) != '(')) continue;
+
+			// Skips the blocks that are not entries.
+			if ("comment".equals(type) || "preamble".equals(type) || "string".equals(type)) {
+				skipBalanced();
+				continue;
+			}
+
+			// Reads the key and the fields, until the entry is closed.
+			pos++;
+			ParsedBibtexEntry entry = new ParsedBibtexEntry(type, readKey(), source);
+			while (true) {
+				skipWhitespaceAndCommas();
+				if (pos >= text.length()) break;
+				char c = text.charAt(pos);
+				if (c == '}' || c == ')') {
+					pos++;
+					break;
+				}
+				String name = readName().toLowerCase();
+				skipWhitespace();
+
+				// If the entry is malformed, keeps the fields read so far and skips to the next entry.
+				if (name.isEmpty() || pos >= text.length() || text.charAt(pos) != '=') {
+					System.out.printf("%s: malformed field in entry %s, near position %d. Skipping the rest of the entry.%n", source, entry.getKey(), pos);
+					int next = text.indexOf("\n@", pos);
+					pos = (next == -1) ? text.length() : next + 1;
+					break;
+				}
+				pos++;
+				entry.getFields().put(name, readValue());
+			}
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	/** Reads a value, which can be bracketed, quoted or bare, or a concatenation of those with #. */
+	private String readValue() {
+		skipWhitespace();
+		int start = pos;
+		while (pos < text.length()) {
+			char c = text.charAt(pos);
+			if (c == '{') skipBalanced();
+			else if (c == '"') {
+				pos++;
+				int depth = 0;
+				while (pos < text.length() && (text.charAt(pos) != '"' || depth > 0 || text.charAt(pos - 1) == '\\')) {
+					if (text.charAt(pos) == '{') depth++;
+					else if (text.charAt(pos) == '}') depth--;
+					pos++;
+				}
+				pos++;
+			}
+			else readName();
+			skipWhitespace();
+			if (pos < text.length() && text.charAt(pos) == '#') pos++;
+			else break;
+			skipWhitespace();
+		}
+		return text.substring(start, Math.min(pos, text.length())).trim();
+	}
+
+	/** Skips a block delimited by brackets or parentheses (the current character), counting the nested brackets. */
+	private void skipBalanced() {
+		char open = text.charAt(pos), close = (open == '(') ? ')' : '}';
+		int depth = 0;
+		for (; pos < text.length(); pos++) {
+			char c = text.charAt(pos);
+			if (c == open) depth++;
+			else if (c == close && --depth == 0) {
+				pos++;
+				return;
+			}
+		}
+	}
+
+	/** Reads a name or bare value (letters, digits and the symbols allowed in names). */
+	private String readName() {
+		int start = pos;
+		while (pos < text.length()) {
+			char c = text.charAt(pos);
+			if (Character.isLetterOrDigit(c) || "-_:.+/".indexOf(c) != -1) pos++;
+			else break;
+		}
+		return text.substring(start, pos);
+	}
+
+	/** Reads the key of an entry, up to the comma that follows it (which is skipped) or the end of the entry. */
+	private String readKey() {
+		int start = pos;
+		while (pos < text.length() && ",})".indexOf(text.charAt(pos)) == -1) pos++;
+		String key = text.substring(start, pos).trim();
+		if (pos < text.length() && text.charAt(pos) == ',') pos++;
+		return key;
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+	}
+
+	private void skipWhitespaceAndCommas() {
+		while (pos < text.length() && (Character.isWhitespace(text.charAt(pos)) || text.charAt(pos) == ',')) pos++;
+	}
+}
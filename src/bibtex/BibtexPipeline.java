@@ -0,0 +1,212 @@
+package bibtex;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import util.EntrySequencer;
+
+/**
+ * Streaming transformation of BibTeX files: reads the entries one at a time, passes each one through a sequence of
+ * stages (see BibtexStages) and prints it to the output. Used by MendeleyBibFixer and PaperCiteMendeleyBibFixer, which
+ * differ only in their default configuration.
+ *
+ * The pipeline can be configured with the following properties (e.g., in bibfixer.properties):
+ *
+ * - stages: comma-separated list of stages, in order: filter, url-comment, collapse-authors, rewrite, double-brackets,
+ * title-first;
+ * - blacklist: comma-separated list of fields to remove (filter stage);
+ * - collapse-authors-count: minimum amount of authors to collapse the list to "X and others" (collapse-authors stage);
+ * - do-overscript: if ordinals should be put in overscript (rewrite stage);
+ * - wrap-urls: if URLs in the fields should be wrapped with LaTeX's url command (rewrite stage);
+ * - double-brackets: comma-separated list of fields to protect with double brackets (double-brackets stage);
+ * - threads: number of threads that process the entries (0 for one per processor core).
+ *
+ * The entries are expected in the format exported by Mendeley: a header line starting with @, one field per line and
+ * a line starting with } closing the entry. Lines outside of entries are ignored. With more than one thread, the
+ * entries are read on the main thread and passed through the stages on a pool of workers (see EntrySequencer), being
+ * written to the output in their original order.
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class BibtexPipeline {
+	/** Separator of the values of list properties. */
+	private static final String LIST_SEPARATOR = "\\s*,\\s*";
+
+	/** Stages of the pipeline, in order. */
+	private List<BibtexStage> stages;
+
+	/** Number of threads that process the entries. */
+	private int threads;
+
+	/** Entries used by each worker thread, reused for all the entries they process. */
+	private ThreadLocal<BibtexRecord> records = new ThreadLocal<BibtexRecord>() {
+		@Override
+		protected BibtexRecord initialValue() {
+			return new BibtexRecord();
+		}
+	};
+
+	/** Constructor. */
+	public BibtexPipeline(List<BibtexStage> stages, int threads) {
+		this.stages = stages;
+		this.threads = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Reads the configuration file, if it exists, returning its properties backed by the given defaults. Empty values
+	 * are ignored, as well as values that are not valid for properties whose default is a number or a boolean.
+	 */
+	public static Properties loadConfiguration(File configFile, Properties defaults) throws IOException {
+		Properties config = new Properties(defaults);
+		if (configFile.exists()) {
+			Properties props = new Properties();
+			try (FileReader reader = new FileReader(configFile)) {
+				props.load(reader);
+			}
+
+			for (String key : props.stringPropertyNames()) {
+				String value = props.getProperty(key).trim(), defaultValue = defaults.getProperty(key);
+				if (value.isEmpty()) continue;
+				if (!isValid(value, defaultValue)) System.out.println("Invalid value for " + key + " property (" + value + "). Using default value: " + defaultValue);
+				else config.setProperty(key, value);
+			}
+		}
+		return config;
+	}
+
+	/** Checks if a value has the same type (number, boolean or text) as the default value of its property. */
+	private static boolean isValid(String value, String defaultValue) {
+		if (defaultValue == null) return true;
+		if ("true".equals(defaultValue) || "false".equals(defaultValue)) return "true".equals(value) || "false".equals(value);
+		try {
+			Integer.parseInt(defaultValue);
+		}
+		catch (NumberFormatException e) {
+			return true;
+		}
+		try {
+			Integer.parseInt(value);
+			return true;
+		}
+		catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/** Splits the value of a list property. */
+	private static String[] getList(Properties config, String key) {
+		String value = config.getProperty(key, "").trim();
+		return value.isEmpty() ? new String[0] : value.split(LIST_SEPARATOR);
+	}
+
+	/** Creates a pipeline from the configuration, using the given table of escaped characters in the rewrite stage. */
+	public static BibtexPipeline configure(Properties config, String[] escaped, char[] nonEscaped) {
+		boolean doOverscript = Boolean.parseBoolean(config.getProperty("do-overscript"));
+		boolean wrapUrls = Boolean.parseBoolean(config.getProperty("wrap-urls"));
+		BibtexFieldRewriter rewriter = new BibtexFieldRewriter(doOverscript, wrapUrls, escaped, nonEscaped);
+
+		List<BibtexStage> stages = new ArrayList<>();
+		for (String stage : getList(config, "stages")) {
+			switch (stage) {
+			case "filter":
+				stages.add(BibtexStages.fieldFilter(getList(config, "blacklist")));
+				break;
+			case "url-comment":
+				stages.add(BibtexStages.urlToComment(rewriter));
+				break;
+			case "collapse-authors":
+				stages.add(BibtexStages.collapseAuthors(Integer.parseInt(config.getProperty("collapse-authors-count"))));
+				break;
+			case "rewrite":
+				stages.add(BibtexStages.rewrite(rewriter));
+				break;
+			case "double-brackets":
+				stages.add(BibtexStages.doubleBrackets(getList(config, "double-brackets")));
+				break;
+			case "title-first":
+				stages.add(BibtexStages.titleFirst());
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown BibTeX pipeline stage: " + stage);
+			}
+		}
+		return new BibtexPipeline(stages, Integer.parseInt(config.getProperty("threads", "0")));
+	}
+
+	/** Passes the entries of the input file through the pipeline, printing them to the output file. Returns their count. */
+	public int process(File inFile, File outFile) throws IOException {
+		int count = 0;
+		try (BufferedReader in = new BufferedReader(new FileReader(inFile)); final PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(outFile))); EntrySequencer<CharSequence> sequencer = (threads > 1) ? createSequencer(out) : null) {
+			BibtexRecord record = records.get();
+			StringBuilder builder = new StringBuilder();
+			List<String> lines = null;
+			String line;
+			while ((line = in.readLine()) != null) {
+				// Checks if it's the beginning of a new item. Prints a logging message.
+				if (line.startsWith("@")) {
+					lines = new ArrayList<>();
+					lines.add(line);
+					int idxA = line.indexOf('{'), idxB = line.indexOf(',');
+					if ((idxA != -1) && (idxB > idxA)) System.out.println("Processing: " + line.substring(idxA + 1, idxB));
+				}
+
+				// Checks if it's the end of an item. Passes it through the stages (here or in a worker) and prints it.
+				else if (line.startsWith("}")) {
+					if (lines == null) continue;
+					if (sequencer == null) {
+						builder.setLength(0);
+						transform(lines, record, builder);
+						out.append(builder);
+					}
+					else submit(sequencer, lines);
+					lines = null;
+					count++;
+				}
+
+				// Otherwise, it's a field of the current item.
+				else if (lines != null) lines.add(line);
+			}
+		}
+		return count;
+	}
+
+	/** Creates a sequencer that processes the entries on the worker threads and prints them in order. */
+	private EntrySequencer<CharSequence> createSequencer(final PrintWriter out) {
+		return new EntrySequencer<>(threads, new EntrySequencer.Sink<CharSequence>() {
+			@Override
+			public void accept(CharSequence result) {
+				out.append(result);
+			}
+		});
+	}
+
+	/** Submits an entry to be passed through the stages by a worker thread. */
+	private void submit(EntrySequencer<CharSequence> sequencer, final List<String> lines) throws IOException {
+		sequencer.submit(new Callable<CharSequence>() {
+			@Override
+			public CharSequence call() {
+				StringBuilder builder = new StringBuilder();
+				transform(lines, records.get(), builder);
+				return builder;
+			}
+		});
+	}
+
+	/** Passes an entry (given by its lines, the header first) through the stages, appending the result to the builder. */
+	private void transform(List<String> lines, BibtexRecord record, StringBuilder builder) {
+		record.reset(lines.get(0));
+		for (int i = 1; i < lines.size(); i++) record.addField(lines.get(i));
+		for (BibtexStage stage : stages) stage.process(record);
+		record.appendTo(builder);
+	}
+}
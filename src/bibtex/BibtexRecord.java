@@ -0,0 +1,119 @@
+package bibtex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A BibTeX entry as it passes through a BibtexPipeline: its header line (e.g., "@inproceedings{key,"), its field lines
+ * and a comment to be printed above it. Lines are kept in StringBuilders that are reused from one entry to the next, so
+ * stages can change them without creating new strings.
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class BibtexRecord {
+	/** Line separator used in the output. */
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	/** Header line of the entry. */
+	private StringBuilder header = new StringBuilder();
+
+	/** Comment printed above the entry (empty for none). */
+	private StringBuilder comment = new StringBuilder();
+
+	/** Fields of the entry, in order. */
+	private List<Field> fields = new ArrayList<>();
+
+	/** Fields that are not in use, kept to be reused. */
+	private List<Field> pool = new ArrayList<>();
+
+	/** Starts a new entry with the given header line, discarding the previous one. */
+	void reset(CharSequence headerLine) {
+		header.setLength(0);
+		header.append(headerLine);
+		comment.setLength(0);
+		pool.addAll(fields);
+		fields.clear();
+	}
+
+	/** Adds a field line to the entry. */
+	void addField(CharSequence line) {
+		Field field = pool.isEmpty() ? new Field() : pool.remove(pool.size() - 1);
+		field.key = BibtexFieldRewriter.getKey(line);
+		field.line.setLength(0);
+		field.line.append(line);
+		fields.add(field);
+	}
+
+	/** Getter for comment. */
+	public StringBuilder getComment() {
+		return comment;
+	}
+
+	/** Number of fields in the entry. */
+	public int size() {
+		return fields.size();
+	}
+
+	/** Returns the field at the given position. */
+	public Field get(int index) {
+		return fields.get(index);
+	}
+
+	/** Removes the field at the given position. */
+	public void remove(int index) {
+		pool.add(fields.remove(index));
+	}
+
+	/** Moves the field at the given position to the top of the entry. */
+	public void moveToTop(int index) {
+		fields.add(0, fields.remove(index));
+	}
+
+	/** Appends the entry to the output: the comment (if any), the header and the fields, without the last comma. */
+	void appendTo(StringBuilder out) {
+		if (comment.length() > 0) out.append(comment).append(LINE_SEPARATOR);
+		StringBuilder last = fields.isEmpty() ? header : fields.get(fields.size() - 1).line;
+		int commaIdx = last.length() - 1;
+		if ((commaIdx > 0) && (last.charAt(commaIdx) == ',')) last.setLength(commaIdx);
+
+		out.append(header).append(LINE_SEPARATOR);
+		for (Field field : fields) out.append(' ').append(field.line).append(LINE_SEPARATOR);
+		out.append('}').append(LINE_SEPARATOR).append(LINE_SEPARATOR);
+	}
+
+	/** A field line of the entry, with its key (e.g., title) and a buffer in which stages can rewrite it. */
+	public static class Field {
+		/** Key of the field. */
+		private String key;
+
+		/** The field line. */
+		private StringBuilder line = new StringBuilder();
+
+		/** Buffer for the new version of the line. */
+		private StringBuilder buffer = new StringBuilder();
+
+		/** Getter for key. */
+		public String getKey() {
+			return key;
+		}
+
+		/** Getter for line. */
+		public StringBuilder getLine() {
+			return line;
+		}
+
+		/** Returns an empty buffer in which the new version of the line should be written, followed by a call to commit(). */
+		public StringBuilder rewrite() {
+			buffer.setLength(0);
+			return buffer;
+		}
+
+		/** Replaces the line with what has been written in the buffer returned by rewrite(). */
+		public void commit() {
+			StringBuilder tmp = line;
+			line = buffer;
+			buffer = tmp;
+		}
+	}
+}
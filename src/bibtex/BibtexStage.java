@@ -0,0 +1,13 @@
+package bibtex;
+
+/**
+ * A step of a BibtexPipeline, which changes the BibTeX entries that pass through it (e.g., removing fields, rewriting
+ * them or moving them around). See BibtexStages for the available steps.
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public interface BibtexStage {
+	/** Processes an entry, changing it in place. */
+	void process(BibtexRecord record);
+}
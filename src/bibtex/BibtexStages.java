@@ -0,0 +1,145 @@
+package bibtex;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Factory of the steps (see BibtexStage) that can be combined in a BibtexPipeline to fix BibTeX files, e.g. the ones
+ * exported by Mendeley. Stages change the lines of the entries in place or rewrite them into the buffers of the fields,
+ * so no strings are created while the entries pass through them.
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public final class BibtexStages {
+	/** BibTeX key for the publication title. */
+	private static final String TITLE_KEY = "title";
+
+	/** BibTeX key for the publication URL. */
+	private static final String URL_KEY = "url";
+
+	/** BibTeX keys for the authors and editors. */
+	private static final String AUTHOR_KEY = "author", EDITOR_KEY = "editor";
+
+	/** Separator of authors in the author/editor lines. */
+	private static final String AUTHOR_SEPARATOR = " and ";
+
+	/** Not to be instantiated. */
+	private BibtexStages() { }
+
+	/** Checks if the field lists authors or editors. */
+	static boolean isAuthorList(BibtexRecord.Field field) {
+		return AUTHOR_KEY.equals(field.getKey()) || EDITOR_KEY.equals(field.getKey());
+	}
+
+	/** Removes the fields we're not interested in. */
+	public static BibtexStage fieldFilter(String... blacklist) {
+		final Set<String> keys = new HashSet<>(Arrays.asList(blacklist));
+		return new BibtexStage() {
+			@Override
+			public void process(BibtexRecord record) {
+				for (int i = record.size() - 1; i >= 0; i--) if (keys.contains(record.get(i).getKey())) record.remove(i);
+			}
+		};
+	}
+
+	/** Removes the URL field, using its (un-escaped) value as comment above the entry. */
+	public static BibtexStage urlToComment(final BibtexFieldRewriter rewriter) {
+		return new BibtexStage() {
+			@Override
+			public void process(BibtexRecord record) {
+				for (int i = record.size() - 1; i >= 0; i--) {
+					BibtexRecord.Field field = record.get(i);
+					if (!URL_KEY.equals(field.getKey())) continue;
+					StringBuilder line = field.getLine();
+					int idx = line.indexOf("{");
+					if (idx != -1) {
+						StringBuilder comment = record.getComment();
+						comment.setLength(0);
+						comment.append("% Source: ");
+						rewriter.unescape(line, idx + 1, line.lastIndexOf("}"), comment);
+					}
+					record.remove(i);
+				}
+			}
+		};
+	}
+
+	/** Collapses the author/editor lists with more than the given amount of authors to "X and others". */
+	public static BibtexStage collapseAuthors(final int collapseAuthorsCount) {
+		return new BibtexStage() {
+			@Override
+			public void process(BibtexRecord record) {
+				for (int i = 0; i < record.size(); i++) if (isAuthorList(record.get(i))) collapse(record.get(i).getLine());
+			}
+
+			/** Counts the authors, remembering where the first separator ends, and cuts the list there if needed. */
+			private void collapse(StringBuilder line) {
+				boolean openQuote = false;
+				int depth = 0, authorCount = 1, cutIdx = -1, len = line.length();
+				for (int i = 0; i < len; i++) {
+					char c = line.charAt(i);
+					if ((c == '"') && (i != 0) && (line.charAt(i - 1) != '\\')) openQuote = !openQuote;
+					else if (c == '{') depth++;
+					else if (c == '}') depth--;
+					else if (!openQuote && (depth == 1) && (c == ' ') && BibtexFieldRewriter.regionMatches(line, i, AUTHOR_SEPARATOR)) {
+						if (cutIdx == -1) cutIdx = i + AUTHOR_SEPARATOR.length() - 1;
+						authorCount++;
+					}
+				}
+				if (authorCount > collapseAuthorsCount && cutIdx != -1) {
+					line.setLength(cutIdx);
+					line.append(" others},");
+				}
+			}
+		};
+	}
+
+	/** Rewrites the fields (see BibtexFieldRewriter). Author/editor lists only have their ordinals rewritten. */
+	public static BibtexStage rewrite(final BibtexFieldRewriter rewriter) {
+		return new BibtexStage() {
+			@Override
+			public void process(BibtexRecord record) {
+				for (int i = 0; i < record.size(); i++) {
+					BibtexRecord.Field field = record.get(i);
+					if (isAuthorList(field)) rewriter.rewriteOrdinals(field.getLine(), field.rewrite());
+					else rewriter.rewrite(field.getLine(), field.rewrite());
+					field.commit();
+				}
+			}
+		};
+	}
+
+	/** Protects the values of the given fields from lowercasing (e.g., by PaperCite) with double brackets. */
+	public static BibtexStage doubleBrackets(String... keys) {
+		final Set<String> protectedKeys = new HashSet<>(Arrays.asList(keys));
+		return new BibtexStage() {
+			@Override
+			public void process(BibtexRecord record) {
+				for (int i = 0; i < record.size(); i++) {
+					if (!protectedKeys.contains(record.get(i).getKey())) continue;
+					StringBuilder line = record.get(i).getLine();
+					int open = line.indexOf("= {"), close = line.lastIndexOf("}");
+					if (open != -1 && close > open) {
+						line.insert(close, '}');
+						line.insert(open + 3, '{');
+					}
+				}
+			}
+		};
+	}
+
+	/** Moves the title to the top of the entry. */
+	public static BibtexStage titleFirst() {
+		return new BibtexStage() {
+			@Override
+			public void process(BibtexRecord record) {
+				for (int i = 0; i < record.size(); i++) if (TITLE_KEY.equals(record.get(i).getKey())) {
+					record.moveToTop(i);
+					return;
+				}
+			}
+		};
+	}
+}
@@ -4,24 +4,47 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.parser.Parser;
-import org.jsoup.select.Elements;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
+import util.CvExtractionCache;
+import util.EntrySequencer;
+import xml.ElementSelector;
 import bibtex.domain.GreyLiterature;
 import bibtex.domain.MastersDissertation;
 import bibtex.domain.PhdThesis;
 import bibtex.domain.UndergradMonograph;
 
+/**
+ * Extracts the supervisions (undergrad monographs, masters dissertations and PhD theses) from Lattes CVs in XML format
+ * as BibTeX grey literature entries. The XML files are read with StAX: the elements and attributes configured in
+ * bibtex-from-lattes.properties are recognized as the file is streamed and only the data of the entry being read is
+ * kept, so the memory used does not depend on the size of the CVs. Selectors can use element names combined with > and
+ * whitespace (see ElementSelector).
+ *
+ * CVs are streamed in parallel by a pool of threads (see the threads property) and their results are printed and
+ * collected in order of file name, so the output doesn't depend on the number of threads.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
 public class ExtractBibtexFromLattesXml {
 	/** Path to the XML file that contains the Lattes CV to be parsed. */
 	private static final String LATTES_XML_FOLDER_PATH = "lattes-nemo";
@@ -32,6 +55,13 @@ public class ExtractBibtexFromLattesXml {
 	/** Properties object that holds all the configuration. */
 	private static final Properties CONFIG = new Properties();
 
+	/** Factory of the XML stream readers, shared by the threads. Doesn't read DTDs or external entities, which are not used by Lattes CVs. */
+	private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+	static {
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
 	/** Map of undergrad monograph entries. */
 	private static final Set<UndergradMonograph> undergradEntries = new TreeSet<>();
 
@@ -54,198 +84,235 @@ public class ExtractBibtexFromLattesXml {
 		File outputMastersFile = new File(CONFIG.getProperty("bibtexOutputFileMasters"));
 		File outputPhdFile = new File(CONFIG.getProperty("bibtexOutputFilePhd"));
 
-		// Processes each file in the Lattes XML folder.
-		for (File lattesXmlFile : lattesXmlFolder.listFiles()) {
-			System.out.printf("***** PROCESSING: %s *****%n%n", lattesXmlFile.getName());
-			
-			// Reads the entire contents of the XML file.
-			StringBuilder xmlContents = new StringBuilder();
-			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(lattesXmlFile), CONFIG.getProperty("encoding")))) {
-				String line = reader.readLine();
-				while (line != null) {
-					xmlContents.append(line).append('\n');
-					line = reader.readLine();
-				}
+		// Compiles the selectors of the supervision lists and of each kind of entry. Uses a generic extraction, thus
+		// provides builder instances that are able to build entries of each kind (mongraphs, dissertations and theses all
+		// have the same BibTeX attributes, basically).
+		final ElementSelector supervisionsSelector = ElementSelector.compile(CONFIG.getProperty("jsoupSelectorSupervisions"));
+		final List<SupervisionCategory<?>> categories = new ArrayList<>();
+		categories.add(new SupervisionCategory<>(undergradEntries, new GreylitBuilder<UndergradMonograph>() {
+			@Override
+			public UndergradMonograph build(String bibtexKey, String title, int year, String institution, String author) {
+				return new UndergradMonograph(bibtexKey, title, year, institution, author);
 			}
-	
-			// Parses the XML file with the Lattes CV using Jsoup.
-			Document doc = Jsoup.parse(xmlContents.toString(), "", Parser.xmlParser());
-	
-			// Extracts the entries from the CV, placing them on the global collections.
-			extractEntries(doc);
-			System.out.println("\n\n");
-		}
 
-		// Writes the BibTeX files for each type of entry.
-		writeBibtexOutput(outputUndergradFile, undergradEntries);
-		writeBibtexOutput(outputMastersFile, mastersEntries);
-		writeBibtexOutput(outputPhdFile, phdEntries);
+			@Override
+			public String getDescription() {
+				return "undergrad monograph";
+			}
 
-		System.out.println("\nDone!");
-	}
+			@Override
+			public String getEntryTypeKey() {
+				return "entryTypeForUndergrad";
+			}
 
-	/**
-	 * TODO: document this method.
-	 * 
-	 * @param outputFile
-	 * @param entries
-	 * @throws FileNotFoundException
-	 */
-	private static void writeBibtexOutput(File outputFile, Set<? extends GreyLiterature> entries) throws FileNotFoundException {
-		try (PrintWriter out = new PrintWriter(outputFile)) {
-			for (GreyLiterature entry : entries) {
-				out.println(entry.toBibtex());
+			@Override
+			public String getEntrySelectorKey() {
+				return "jsoupSelectorUndergradEntry";
 			}
-		}
-	}
 
-	/**
-	 * TODO: document this method.
-	 * 
-	 * @param doc
-	 */
-	private static void extractEntries(Document doc) {
-		// Navigates to the nodes that contains all supervisions (supports multiple, althoug we expect a single one).
-		Elements supervisionLists = doc.select(CONFIG.getProperty("jsoupSelectorSupervisions"));
-		System.out.printf("Discovered %d supervision list(s) in the XML file...%n", supervisionLists.size());
-
-		// Goes through all the supervision lists.
-		for (Element supervisionList : supervisionLists) {
-			// Navigates to the elements representing undergrad monographs and extracts the entries, placing them on the map.
-			// Uses a generic extraction method, thus provides a builder instance that is able to build entries of this kind.
-			// (Mongraphs, dissertations and theses all have the same BibTeX attributes, basically).
-			Elements elems = supervisionList.select(CONFIG.getProperty("jsoupSelectorUndergradEntry"));
-			System.out.printf("%nDiscovered %d supervision entries of type: undergrad monograph. Filtering...%n", elems.size());
-			extractEntries(elems, undergradEntries, new GreylitBuilder<UndergradMonograph>() {
-				@Override
-				public UndergradMonograph build(String bibtexKey, String title, int year, String institution, String author) {
-					return new UndergradMonograph(bibtexKey, title, year, institution, author);
-				}
+			@Override
+			public String getBasicDataSelectorKey() {
+				return "jsoupSelectorUndergradBasic";
+			}
 
-				@Override
-				public String getEntryTypeKey() {
-					return "entryTypeForUndergrad";
-				}
+			@Override
+			public String getDetailedDataSelectorKey() {
+				return "jsoupSelectorUndergradDetails";
+			}
+		}));
 
-				@Override
-				public String getBasicDataSelectorKey() {
-					return "jsoupSelectorUndergradBasic";
-				}
+		// Same as before, for masters dissertations.
+		categories.add(new SupervisionCategory<>(mastersEntries, new GreylitBuilder<MastersDissertation>() {
+			@Override
+			public MastersDissertation build(String bibtexKey, String title, int year, String institution, String author) {
+				return new MastersDissertation(bibtexKey, title, year, institution, author);
+			}
 
-				@Override
-				public String getDetailedDataSelectorKey() {
-					return "jsoupSelectorUndergradDetails";
-				}
-			});
+			@Override
+			public String getDescription() {
+				return "masters dissertation";
+			}
 
-			// Same as before, for masters dissertations.
-			elems = supervisionList.select(CONFIG.getProperty("jsoupSelectorMastersEntry"));
-			System.out.printf("%nDiscovered %d supervision entries of type: masters dissertation. Filtering...%n", elems.size());
-			extractEntries(elems, mastersEntries, new GreylitBuilder<MastersDissertation>() {
-				@Override
-				public MastersDissertation build(String bibtexKey, String title, int year, String institution, String author) {
-					return new MastersDissertation(bibtexKey, title, year, institution, author);
-				}
+			@Override
+			public String getEntryTypeKey() {
+				return "entryTypeForMasters";
+			}
 
-				@Override
-				public String getEntryTypeKey() {
-					return "entryTypeForMasters";
-				}
+			@Override
+			public String getEntrySelectorKey() {
+				return "jsoupSelectorMastersEntry";
+			}
 
-				@Override
-				public String getBasicDataSelectorKey() {
-					return "jsoupSelectorMastersBasic";
-				}
+			@Override
+			public String getBasicDataSelectorKey() {
+				return "jsoupSelectorMastersBasic";
+			}
 
-				@Override
-				public String getDetailedDataSelectorKey() {
-					return "jsoupSelectorMastersDetails";
-				}
-			});
+			@Override
+			public String getDetailedDataSelectorKey() {
+				return "jsoupSelectorMastersDetails";
+			}
+		}));
 
-			// Same as before, for PhD theses.
-			elems = supervisionList.select(CONFIG.getProperty("jsoupSelectorPhdEntry"));
-			System.out.printf("%nDiscovered %d supervision entries of type: PhD thesis. Filtering...%n", elems.size());
-			extractEntries(elems, phdEntries, new GreylitBuilder<PhdThesis>() {
-				@Override
-				public PhdThesis build(String bibtexKey, String title, int year, String institution, String author) {
-					return new PhdThesis(bibtexKey, title, year, institution, author);
-				}
+		// Same as before, for PhD theses.
+		categories.add(new SupervisionCategory<>(phdEntries, new GreylitBuilder<PhdThesis>() {
+			@Override
+			public PhdThesis build(String bibtexKey, String title, int year, String institution, String author) {
+				return new PhdThesis(bibtexKey, title, year, institution, author);
+			}
 
-				@Override
-				public String getEntryTypeKey() {
-					return "entryTypeForPhd";
-				}
+			@Override
+			public String getDescription() {
+				return "PhD thesis";
+			}
 
-				@Override
-				public String getBasicDataSelectorKey() {
-					return "jsoupSelectorPhdBasic";
-				}
+			@Override
+			public String getEntryTypeKey() {
+				return "entryTypeForPhd";
+			}
 
+			@Override
+			public String getEntrySelectorKey() {
+				return "jsoupSelectorPhdEntry";
+			}
+
+			@Override
+			public String getBasicDataSelectorKey() {
+				return "jsoupSelectorPhdBasic";
+			}
+
+			@Override
+			public String getDetailedDataSelectorKey() {
+				return "jsoupSelectorPhdDetails";
+			}
+		}));
+
+		// Processes each file in the Lattes XML folder, in order of name, streaming them on a pool of worker threads. The
+		// results of each file are printed and placed on the global collections by the main thread, in that same order.
+		File[] lattesXmlFiles = lattesXmlFolder.listFiles();
+		Arrays.sort(lattesXmlFiles);
+		int threads = Integer.parseInt(CONFIG.getProperty("threads", "0"));
+		if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+		long start = System.currentTimeMillis();
+
+		// If a cache file is configured, only the CVs that changed since the last run are streamed.
+		String cacheFileName = CONFIG.getProperty("cacheFile", "").trim();
+		final CvExtractionCache<CvExtraction> cache = cacheFileName.isEmpty() ? null : new CvExtractionCache<CvExtraction>(new File(cacheFileName), CONFIG);
+		try (EntrySequencer<CvExtraction> sequencer = new EntrySequencer<>(threads, new EntrySequencer.Sink<CvExtraction>() {
+			@Override
+			public void accept(CvExtraction extraction) {
+				extraction.finish(categories);
+			}
+		})) {
+			for (final File lattesXmlFile : lattesXmlFiles) sequencer.submit(new Callable<CvExtraction>() {
 				@Override
-				public String getDetailedDataSelectorKey() {
-					return "jsoupSelectorPhdDetails";
+				public CvExtraction call() throws Exception {
+					CvExtraction extraction = (cache == null) ? null : cache.get(lattesXmlFile);
+					if (extraction != null) extraction.cached = true;
+					else {
+						extraction = extractEntries(lattesXmlFile, supervisionsSelector, categories);
+						if (cache != null) cache.put(lattesXmlFile, extraction);
+					}
+					return extraction;
 				}
 			});
 		}
+		System.out.printf("Processed %d CV(s) in %d ms using %d thread(s).%n", lattesXmlFiles.length, System.currentTimeMillis() - start, threads);
+		if (cache != null) {
+			cache.save();
+			System.out.printf("Cache: %s.%n", cache.getStatistics());
+		}
+
+		// Writes the BibTeX files for each type of entry.
+		writeBibtexOutput(outputUndergradFile, undergradEntries);
+		writeBibtexOutput(outputMastersFile, mastersEntries);
+		writeBibtexOutput(outputPhdFile, phdEntries);
+
+		System.out.println("\nDone!");
 	}
 
 	/**
 	 * TODO: document this method.
 	 * 
-	 * @param elements
+	 * @param outputFile
 	 * @param entries
-	 * @param builder
+	 * @throws FileNotFoundException
 	 */
-	private static <T extends GreyLiterature> void extractEntries(Elements elements, Set<T> entries, GreylitBuilder<T> builder) {
-		int count = 0;
-
-		// Get the properties from the configuration before iterating.
-		int startYear = Integer.parseInt(CONFIG.getProperty("startYear"));
-		int endYear = Integer.parseInt(CONFIG.getProperty("endYear"));
-		String jsoupSelectorBasic = CONFIG.getProperty(builder.getBasicDataSelectorKey());
-		String jsoupSelectorDetailed = CONFIG.getProperty(builder.getDetailedDataSelectorKey());
-		String entryId = CONFIG.getProperty("entryId");
-		String entryAttributeYear = CONFIG.getProperty("entryAttributeYear");
-		String entryAttributeNature = CONFIG.getProperty("entryAttributeNature");
-		String entryAttributeTitle = CONFIG.getProperty("entryAttributeTitle");
-		String entryAttributeInstitution = CONFIG.getProperty("entryAttributeInstitution");
-		String entryAttributeSupervised = CONFIG.getProperty("entryAttributeSupervised");
-		String entryAttributeSupervisorType = CONFIG.getProperty("entryAttributeSupervisorType");
-		String correctEntryType = CONFIG.getProperty(builder.getEntryTypeKey());
-		String mainSupervisorType = CONFIG.getProperty("mainSupervisorType");
-
-		// Goes through every element that has been parsed.
-		for (Element elem : elements) {
-			// Obtains the basic and detailed data from the element.
-			Element basic = elem.select(jsoupSelectorBasic).first();
-			Element detail = elem.select(jsoupSelectorDetailed).first();
-			String id = elem.attr(entryId);
-
-			// Checks if the nature matches the entry type and that the supervisor is the main one.
-			String nature = basic.attr(entryAttributeNature);
-			String supervisorType = detail.attr(entryAttributeSupervisorType);
-			if (correctEntryType.equals(nature) && ((! detail.hasAttr(entryAttributeSupervisorType)) || mainSupervisorType.equals(supervisorType))) {
-				// Checks that the year is in the period of interest.
-				int year = Integer.parseInt(basic.attr(entryAttributeYear));
-				if ((startYear == 0 || startYear <= year) && (endYear == 0 || endYear >= year)) {
-					// Gets the other relevant attributes for the publication.
-					String title = basic.attr(entryAttributeTitle);
-					String institution = detail.attr(entryAttributeInstitution);
-					String supervised = bibtexAuthorFormat(detail.attr(entryAttributeSupervised));
+	private static void writeBibtexOutput(File outputFile, Set<? extends GreyLiterature> entries) throws FileNotFoundException {
+		try (PrintWriter out = new PrintWriter(outputFile)) {
+			for (GreyLiterature entry : entries) {
+				out.println(entry.toBibtex());
+			}
+		}
+	}
 
-					// Creates the publication, generates a key for it and places it in the map.
-					String bibtexKey = generateEntryKey(title, year);
-					T entry = builder.build(bibtexKey, title, year, institution, supervised);
-					System.out.printf("\t- %s: %s%n", id, entry);
-					entries.add(entry);
-					count++;
+	/**
+	 * Streams a Lattes XML file, extracting the entries inside the supervision lists. Keeps the names of the open
+	 * elements (the path) to match them with the selectors: supervision lists with the whole path, entries with the path
+	 * inside the list and basic and detailed data with the path inside the entry. Doesn't change the global collections,
+	 * so files can be streamed by different threads.
+	 * 
+	 * @param lattesXmlFile
+	 * @param supervisionsSelector
+	 * @param categories
+	 * @return
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private static CvExtraction extractEntries(File lattesXmlFile, ElementSelector supervisionsSelector, List<SupervisionCategory<?>> categories) throws IOException, XMLStreamException {
+		long start = System.currentTimeMillis();
+		CvExtraction extraction = new CvExtraction(lattesXmlFile);
+		for (int i = 0; i < categories.size(); i++) extraction.extractions.add(new CategoryExtraction());
+
+		// The category of the entry being streamed is given by its index (-1 if not inside an entry).
+		int listDepth = -1, entryDepth = -1, current = -1;
+		List<String> path = new ArrayList<>();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(lattesXmlFile), CONFIG.getProperty("encoding")))) {
+			XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+			try {
+				while (reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						path.add(reader.getLocalName());
+						int depth = path.size() - 1;
+
+						// Looks for a supervision list, then for entries inside it, then for the data of the entry.
+						if (listDepth == -1) {
+							if (supervisionsSelector.matches(path, 0)) {
+								listDepth = depth;
+								extraction.supervisionLists++;
+							}
+						}
+						else if (current == -1) {
+							for (int i = 0; i < categories.size(); i++)
+								if (categories.get(i).startEntry(extraction.extractions.get(i), path, listDepth, reader)) {
+									current = i;
+									entryDepth = depth;
+									break;
+								}
+						}
+						else categories.get(current).readData(extraction.extractions.get(current), path, entryDepth, reader);
+					}
+
+					else if (event == XMLStreamConstants.END_ELEMENT) {
+						int depth = path.size() - 1;
+						if (depth == entryDepth) {
+							categories.get(current).endEntry(extraction.extractions.get(current));
+							current = -1;
+							entryDepth = -1;
+						}
+						else if (depth == listDepth) listDepth = -1;
+						path.remove(depth);
+					}
 				}
 			}
+			finally {
+				reader.close();
+			}
 		}
 
-		// Prints the count information.
-		System.out.printf("\t** %d entries matched the configured filters%n", count);
+		extraction.elapsed = System.currentTimeMillis() - start;
+		return extraction;
 	}
 
 	/**
@@ -287,6 +354,189 @@ public class ExtractBibtexFromLattesXml {
 		key = key + "_" + year;
 		return key;
 	}
+
+	/**
+	 * The entries extracted from a Lattes XML file, to be printed and placed on the global collections once all the files
+	 * before it have been. Stored in the cache for the next runs.
+	 *
+	 * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+	 * @version 1.0
+	 */
+	private static class CvExtraction implements Serializable {
+		/** Serialization version. */
+		private static final long serialVersionUID = 1L;
+
+		/** The Lattes XML file. */
+		private File file;
+
+		/** Number of supervision lists discovered in the file. */
+		private int supervisionLists;
+
+		/** Extractions of each kind of entry, in the same order as the categories. */
+		private List<CategoryExtraction> extractions = new ArrayList<>();
+
+		/** Time taken to stream the file, in milliseconds. */
+		private long elapsed;
+
+		/** If the entries have been taken from the cache in this run. */
+		private transient boolean cached;
+
+		/** Constructor. */
+		CvExtraction(File file) {
+			this.file = file;
+		}
+
+		/** Prints what has been discovered and what matched the configured filters and places the entries on the global collections. */
+		void finish(List<SupervisionCategory<?>> categories) {
+			System.out.printf("***** PROCESSING: %s *****%n%n", file.getName());
+			System.out.printf("Discovered %d supervision list(s) in the XML file...%n", supervisionLists);
+			for (int i = 0; i < categories.size(); i++) categories.get(i).finish(extractions.get(i));
+			if (cached) System.out.printf("%nUnchanged: entries taken from the cache.%n");
+			else System.out.printf("%nProcessed in %d ms.%n", elapsed);
+			System.out.println("\n\n");
+		}
+	}
+
+	/**
+	 * The extraction of the entries of a kind (undergrad, masters or PhD) from a Lattes XML file: the data of the entry
+	 * being streamed and the entries that matched the filters, kept apart from the global collection until the file is
+	 * finished.
+	 *
+	 * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+	 * @version 1.0
+	 */
+	private static class CategoryExtraction implements Serializable {
+		/** Serialization version. */
+		private static final long serialVersionUID = 1L;
+
+		/** Attributes of the entry being streamed and of its basic and detailed data (null if not read yet). */
+		private transient String id;
+		private transient Map<String, String> basic, detail;
+
+		/** Number of entries discovered in the file and the log of the ones that matched the filters. */
+		private int discovered;
+		private StringBuilder log = new StringBuilder();
+
+		/** Entries that matched the filters. */
+		private List<GreyLiterature> extracted = new ArrayList<>();
+	}
+
+	/**
+	 * A kind of supervision entry (undergrad, masters or PhD), with the compiled selectors of its elements and the
+	 * global collection in which its entries are placed. Reads the entries of this kind into a CategoryExtraction.
+	 *
+	 * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+	 * @version 1.0
+	 * @param <T>
+	 */
+	private static class SupervisionCategory<T extends GreyLiterature> {
+		/** Global collection of entries of this kind. */
+		private Set<T> entries;
+
+		/** Builder of the entries. */
+		private GreylitBuilder<T> builder;
+
+		/** Selectors of the entries and of their basic and detailed data. */
+		private ElementSelector entrySelector, basicSelector, detailedSelector;
+
+		/** Configured values and attributes used to filter and build the entries. */
+		private int startYear, endYear;
+		private String entryId, entryAttributeYear, entryAttributeNature, entryAttributeTitle, entryAttributeInstitution, entryAttributeSupervised, entryAttributeSupervisorType, correctEntryType, mainSupervisorType;
+
+		/** Constructor. */
+		SupervisionCategory(Set<T> entries, GreylitBuilder<T> builder) {
+			this.entries = entries;
+			this.builder = builder;
+
+			// Gets the properties from the configuration before streaming.
+			entrySelector = ElementSelector.compile(CONFIG.getProperty(builder.getEntrySelectorKey()));
+			basicSelector = ElementSelector.compile(CONFIG.getProperty(builder.getBasicDataSelectorKey()));
+			detailedSelector = ElementSelector.compile(CONFIG.getProperty(builder.getDetailedDataSelectorKey()));
+			startYear = Integer.parseInt(CONFIG.getProperty("startYear"));
+			endYear = Integer.parseInt(CONFIG.getProperty("endYear"));
+			entryId = CONFIG.getProperty("entryId");
+			entryAttributeYear = CONFIG.getProperty("entryAttributeYear");
+			entryAttributeNature = CONFIG.getProperty("entryAttributeNature");
+			entryAttributeTitle = CONFIG.getProperty("entryAttributeTitle");
+			entryAttributeInstitution = CONFIG.getProperty("entryAttributeInstitution");
+			entryAttributeSupervised = CONFIG.getProperty("entryAttributeSupervised");
+			entryAttributeSupervisorType = CONFIG.getProperty("entryAttributeSupervisorType");
+			correctEntryType = CONFIG.getProperty(builder.getEntryTypeKey());
+			mainSupervisorType = CONFIG.getProperty("mainSupervisorType");
+		}
+
+		/** Checks if the element that has just started is an entry of this kind and, if so, starts reading it. */
+		boolean startEntry(CategoryExtraction extraction, List<String> path, int listDepth, XMLStreamReader reader) {
+			if (!entrySelector.matches(path, listDepth)) return false;
+			extraction.id = getAttribute(reader, entryId);
+			extraction.basic = null;
+			extraction.detail = null;
+			extraction.discovered++;
+			return true;
+		}
+
+		/** Reads the attributes of the element that has just started if it has the (first) basic or detailed data of the entry. */
+		void readData(CategoryExtraction extraction, List<String> path, int entryDepth, XMLStreamReader reader) {
+			if (extraction.basic == null && basicSelector.matches(path, entryDepth)) extraction.basic = getAttributes(reader);
+			else if (extraction.detail == null && detailedSelector.matches(path, entryDepth)) extraction.detail = getAttributes(reader);
+		}
+
+		/** Finishes reading the entry, building it and keeping it if it matches the filters. */
+		void endEntry(CategoryExtraction extraction) {
+			Map<String, String> basic = extraction.basic, detail = extraction.detail;
+			if (basic == null || detail == null) return;
+
+			// Checks if the nature matches the entry type and that the supervisor is the main one.
+			String nature = basic.get(entryAttributeNature);
+			String supervisorType = detail.get(entryAttributeSupervisorType);
+			if (correctEntryType.equals(nature) && (supervisorType == null || mainSupervisorType.equals(supervisorType))) {
+				// Checks that the year is in the period of interest.
+				int year = Integer.parseInt(basic.get(entryAttributeYear));
+				if ((startYear == 0 || startYear <= year) && (endYear == 0 || endYear >= year)) {
+					// Gets the other relevant attributes for the publication.
+					String title = getValue(basic, entryAttributeTitle);
+					String institution = getValue(detail, entryAttributeInstitution);
+					String supervised = bibtexAuthorFormat(getValue(detail, entryAttributeSupervised));
+
+					// Creates the publication and generates a key for it.
+					String bibtexKey = generateEntryKey(title, year);
+					T entry = builder.build(bibtexKey, title, year, institution, supervised);
+					extraction.log.append(String.format("\t- %s: %s%n", extraction.id, entry));
+					extraction.extracted.add(entry);
+				}
+			}
+		}
+
+		/** Prints the entries discovered and the ones that matched the filters, placing the latter in the global collection. */
+		@SuppressWarnings("unchecked")
+		void finish(CategoryExtraction extraction) {
+			System.out.printf("%nDiscovered %d supervision entries of type: %s. Filtering...%n", extraction.discovered, builder.getDescription());
+			System.out.print(extraction.log);
+			System.out.printf("\t** %d entries matched the configured filters%n", extraction.extracted.size());
+
+			// The entries have been built by this category's builder, so they are of type T.
+			for (GreyLiterature entry : extraction.extracted) entries.add((T) entry);
+		}
+
+		/** Copies the attributes of the current element. */
+		private static Map<String, String> getAttributes(XMLStreamReader reader) {
+			Map<String, String> attributes = new HashMap<>();
+			for (int i = 0; i < reader.getAttributeCount(); i++) attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+			return attributes;
+		}
+
+		/** Returns the value of an attribute of the current element, or an empty string if it doesn't have it. */
+		private static String getAttribute(XMLStreamReader reader, String name) {
+			String value = reader.getAttributeValue(null, name);
+			return (value == null) ? "" : value;
+		}
+
+		/** Returns the value of an attribute, or an empty string if it doesn't exist. */
+		private static String getValue(Map<String, String> attributes, String name) {
+			String value = attributes.get(name);
+			return (value == null) ? "" : value;
+		}
+	}
 }
 
 /**
@@ -309,6 +559,13 @@ interface GreylitBuilder<T extends GreyLiterature> {
 	 */
 	T build(String bibtexKey, String title, int year, String institution, String author);
 
+	/**
+	 * Returns the description of the kind of entry, for the log messages.
+	 * 
+	 * @return
+	 */
+	String getDescription();
+
 	/**
 	 * TODO: document this method.
 	 * 
@@ -316,6 +573,13 @@ interface GreylitBuilder<T extends GreyLiterature> {
 	 */
 	String getEntryTypeKey();
 
+	/**
+	 * Returns the key of the configuration property with the selector of the entries, inside a supervision list.
+	 * 
+	 * @return
+	 */
+	String getEntrySelectorKey();
+
 	/**
 	 * TODO: document this method.
 	 * 
@@ -0,0 +1,85 @@
+package bibtex;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import bibtex.domain.ParsedBibtexEntry;
+
+/**
+ * Merges BibTeX files from different origins (e.g., the one exported by Mendeley, the .bib files of a lab and the ones
+ * generated by ExtractBibtexFromLattesXml) in a single file without duplicates. Entries that refer to the same
+ * publication (same DOI, same title and year or similar titles) are merged by a BibtexMerger, taking the values of the
+ * fields from the files according to their precedence.
+ *
+ * The script can be configured in mergebibtex.properties: input-files (in order of precedence), output-file,
+ * aliases-file, similarity-threshold, year-tolerance and the precedence of specific fields, e.g. precedence.author =
+ * lab.bib. The aliases file lists the keys that are not in the output anymore and the keys that replaced them.
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class MergeBibtex {
+	/** Path to the configuration file. */
+	private static final String CONFIG_FILE_PATH = "mergebibtex.properties";
+
+	/** Prefix of the properties that set the precedence of the files for a field. */
+	private static final String PRECEDENCE_PREFIX = "precedence.";
+
+	/** Default configuration, used for the properties that are not in the configuration file. */
+	private static final Properties DEFAULTS = new Properties();
+
+	static {
+		DEFAULTS.setProperty("input-files", "mendeley-fix.bib, greylit-undergrad.bib, greylit-masters.bib, greylit-phd.bib");
+		DEFAULTS.setProperty("output-file", "merged.bib");
+		DEFAULTS.setProperty("aliases-file", "merged-aliases.txt");
+		DEFAULTS.setProperty("similarity-threshold", "0.8");
+		DEFAULTS.setProperty("year-tolerance", "1");
+	}
+
+	/** Main method. */
+	public static void main(String[] args) throws Exception {
+		// Checks for a configuration file and read the value of the parameters from it.
+		Properties config = BibtexPipeline.loadConfiguration(new File(CONFIG_FILE_PATH), DEFAULTS);
+		List<String> inputFiles = Arrays.asList(config.getProperty("input-files").trim().split("\\s*,\\s*"));
+		File outputFile = new File(config.getProperty("output-file"));
+		File aliasesFile = new File(config.getProperty("aliases-file"));
+		List<String> sources = new ArrayList<>();
+		for (String inputFile : inputFiles) sources.add(new File(inputFile).getName());
+
+		BibtexMerger merger = new BibtexMerger(sources, Double.parseDouble(config.getProperty("similarity-threshold")), Integer.parseInt(config.getProperty("year-tolerance")));
+		for (String name : config.stringPropertyNames()) if (name.startsWith(PRECEDENCE_PREFIX)) {
+			merger.setFieldPrecedence(name.substring(PRECEDENCE_PREFIX.length()), Arrays.asList(config.getProperty(name).trim().split("\\s*,\\s*")));
+		}
+
+		// Reads the input files. Files that don't exist are skipped.
+		long start = System.currentTimeMillis();
+		for (String inputFile : inputFiles) {
+			File file = new File(inputFile);
+			if (!file.exists()) {
+				System.out.printf("Skipping %s: file not found.%n", inputFile);
+				continue;
+			}
+			List<ParsedBibtexEntry> entries = BibtexParser.parse(file);
+			System.out.printf("Read %d entries from %s.%n", entries.size(), inputFile);
+			merger.addAll(entries);
+		}
+
+		// Merges the duplicates and writes the result.
+		List<ParsedBibtexEntry> merged = merger.merge();
+		try (PrintWriter out = new PrintWriter(outputFile)) {
+			for (ParsedBibtexEntry entry : merged) out.println(entry.toBibtex());
+		}
+		try (PrintWriter out = new PrintWriter(aliasesFile)) {
+			for (String alias : merger.getAliases()) out.println(alias);
+		}
+
+		// Reports the merges and statistics.
+		for (String merge : merger.getMerges()) System.out.println("Merged: " + merge);
+		System.out.printf("%nMerged %d entries into %d in %s (%d by DOI, %d by title and year, %d by similar title, %d merges refused) in %d ms.%n", merger.size(), merged.size(), outputFile.getName(), merger.getMergedByDoi(), merger.getMergedByTitle(), merger.getMergedBySimilarity(), merger.getRefused(), System.currentTimeMillis() - start);
+		System.out.printf("Wrote %d key aliases to %s.%n", merger.getAliases().size(), aliasesFile.getName());
+	}
+}
@@ -1,15 +1,13 @@
 package bibtex;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.PrintWriter;
 import java.util.Properties;
-import java.util.Scanner;
 
 /**
  * Reads an input BibTeX file generated by Mendeley (see mendeley.com) and creates a new BibTeX file including, for each
  * BibTeX entry, only the content that is interesting (according to a blacklist). Also, makes sure the title is the
- * first entry of the item and uses the URL as a comment above the BibTeX entry.
+ * first entry of the item and protects the names of conferences and journals with double brackets, so PaperCite
+ * doesn't lowercase them. The entries pass through a BibtexPipeline, which can be configured in bibfixer.properties.
  * 
  * Possible improvements: - Replace Something(TM) with Something$\texttrademark$
  * 
@@ -17,194 +15,41 @@ import java.util.Scanner;
  * @version 1.0
  */
 public class PaperCiteMendeleyBibFixer {
-	/** Path to input file. */
-	private static String BIB_FILE_INPUT_PATH = "mendeley.bib";
+	/** Path to the configuration file. */
+	private static final String CONFIG_FILE_PATH = "bibfixer.properties";
 
-	/** Path to output file. */
-	private static String BIB_FILE_OUTPUT_PATH = "mendeley-fix.bib";
-
-	/** BibTeX keys we're not interested in. */
-	private static String[] blacklist = new String[] { "annote", "abstract", "file", "keywords", "mendeley-tags", "address" };
-	
-	/** Keys that should be protected from lowercasing with double brackets. */
-	private static String[] doubleBrackets = new String[] { "booktitle", "journal" };
-
-	/** Minimum amount of authors required to collapse the list from "X, Y, Z, ..." to "X et al."). */
-	private static int collapseAuthorsCount = 7;
+	/** Default configuration, used for the properties that are not in the configuration file. */
+	private static final Properties DEFAULTS = new Properties();
 
 	/** Characters to un-escape. */
-	private static final String[] escaped = new String[] { "\\\\\\&", "\\\\_", "\\\\%", "\\\\#", "\\\\~\\{\\}" };
+	private static final String[] escaped = new String[] { "\\&", "\\_", "\\%", "\\#", "\\~{}" };
 
 	/** Un-escaped versions of above characters. */
-	private static final String[] nonEscaped = new String[] { "&", "_", "%", "#", "~" };
-
-	/** BibTeX key for the publication title. */
-	private static final String titleKey = "title";
-
-	/** BibTeX key for the author. */
-	private static final String authorKey = "author";
-
-	/** BibTeX key for the editors. */
-	private static final String editorKey = "editor";
+	private static final char[] nonEscaped = new char[] { '&', '_', '%', '#', '~' };
+
+	static {
+		DEFAULTS.setProperty("input-file", "mendeley.bib");
+		DEFAULTS.setProperty("output-file", "mendeley-fix.bib");
+		DEFAULTS.setProperty("stages", "filter, collapse-authors, rewrite, double-brackets, title-first");
+		DEFAULTS.setProperty("blacklist", "annote, abstract, file, keywords, mendeley-tags, address");
+		DEFAULTS.setProperty("wrap-urls", "false");
+		DEFAULTS.setProperty("collapse-authors-count", "7");
+		DEFAULTS.setProperty("threads", "0");
+		DEFAULTS.setProperty("double-brackets", "booktitle, journal");
+	}
 
 	/** Main method. */
 	public static void main(String[] args) throws Exception {
-		// Checks for a configuration file and read the value of the constants from it.
-		configure();
-
-		File inFile = new File(BIB_FILE_INPUT_PATH);
-		File outFile = new File(BIB_FILE_OUTPUT_PATH);
-
-		// Initializes the objects needed for the parsing and output.
-		Scanner in = new Scanner(inFile);
-		PrintWriter out = new PrintWriter(outFile);
-		StringBuilder builder = new StringBuilder();
-		String titleLine = null, urlLine = null;
-
-		// Parses all lines in the source file.
-		while (in.hasNextLine()) {
-			String line = in.nextLine();
+		// Checks for a configuration file and read the value of the parameters from it.
+		Properties config = BibtexPipeline.loadConfiguration(new File(CONFIG_FILE_PATH), DEFAULTS);
 
-			// Checks if it's the beginning of a new item.
-			if (line.startsWith("@")) {
-				builder.append(line).append('\n');
-
-				// Prints a logging message.
-				int idxA = line.indexOf('{'), idxB = line.indexOf(',');
-				if ((idxA != -1) && (idxB > idxA)) {
-					String bibKey = line.substring(idxA + 1, idxB);
-					System.out.println("Processing: " + bibKey);
-				}
-			}
-
-			// Checks if it's the end of an item. Prints the item to the output.
-			else if (line.startsWith("}")) {
-				// Finishes the builder and prints.
-				builder.append('}').append('\n');
-				printToOutput(builder, titleLine, urlLine, out);
-
-				// Resets the variables.
-				titleLine = null;
-				urlLine = null;
-				builder = new StringBuilder();
-			}
-
-			// Checks if it's the title line. Separates it so it can be the 1st line of the BibTeX item.
-			else if (line.startsWith(titleKey)) titleLine = " " + replaceEscaped(line) + "\n";
-
-			// Checks if it's the author or editor lines. Checks if we should collapse the list.
-			else if ((line.startsWith(authorKey)) || (line.startsWith(editorKey))) {
-				int numAuthors = countAuthors(line);
-				if (numAuthors > collapseAuthorsCount) line = collapseAuthors(line);
-				builder.append(' ').append(line).append('\n');
-			}
-
-			// Otherwise, check if the line is blacklisted and include in the output if it's not.
-			else if (!isBlacklisted(line)) builder.append(' ').append(replaceEscaped(line)).append('\n');
-		}
-
-		// Closes everything.
-		in.close();
-		out.close();
+		// PaperCite shows the references in HTML, so ordinals are never put in overscript, even if the (shared)
+		// configuration file says so.
+		config.setProperty("do-overscript", "false");
+		BibtexPipeline pipeline = BibtexPipeline.configure(config, escaped, nonEscaped);
 
+		// Fixes the input file.
+		pipeline.process(new File(config.getProperty("input-file")), new File(config.getProperty("output-file")));
 		System.out.println("Done!");
 	}
-
-	/** If file bibfixer.properties is provided, change the value of the parameters with it. */
-	private static void configure() throws Exception {
-		File configFile = new File("bibfixer.properties");
-		if (configFile.exists()) {
-			Properties props = new Properties();
-			props.load(new FileReader(configFile));
-
-			String sInputFile = props.getProperty("input-file").trim();
-			String sOutputFile = props.getProperty("output-file").trim();
-			String sBlacklist = props.getProperty("blacklist").trim();
-			String sCollapseAuthorsCount = props.getProperty("collapse-authors-count").trim();
-
-			if ((sInputFile != null) && (!sInputFile.isEmpty())) BIB_FILE_INPUT_PATH = sInputFile;
-			if ((sOutputFile != null) && (!sOutputFile.isEmpty())) BIB_FILE_OUTPUT_PATH = sOutputFile;
-
-			if ((sBlacklist != null) && (!sBlacklist.isEmpty())) {
-				blacklist = sBlacklist.split("\\s*,\\s*");
-			}
-
-			if ((sCollapseAuthorsCount != null) && (!sCollapseAuthorsCount.isEmpty())) {
-				try {
-					int cac = Integer.parseInt(sCollapseAuthorsCount);
-					collapseAuthorsCount = cac;
-				}
-				catch (NumberFormatException e) {
-					System.out.println("Invalid value for collapse-authors-count property (" + sCollapseAuthorsCount + "). Using default value: " + collapseAuthorsCount);
-				}
-			}
-		}
-	}
-
-	/** Prints the BibTeX item to the output, fixing the title position and placing the URL as comment. */
-	private static void printToOutput(StringBuilder builder, String titleLine, String urlLine, PrintWriter out) {
-		int idx = builder.indexOf("\n");
-		if (idx != -1) {
-			// Adds the title as the first attribute of the entry.
-			builder.insert(idx + 1, titleLine);
-
-			// Removes the trailing comma, if any.
-			int commaIdx = builder.length() - 4;
-			if ((commaIdx > 0) && (builder.charAt(commaIdx) == ',')) builder.deleteCharAt(commaIdx);
-
-			// Prints the URL (if any) as comment and then prints the BibTeX entry.
-			if (urlLine != null) out.println(urlLine);
-			out.println(builder.toString());
-		}
-	}
-
-	/** Checks if the line refers to a BibTeX item that has been blacklisted (not interestint to us). */
-	private static boolean isBlacklisted(String line) {
-		for (String key : blacklist)
-			if (line.startsWith(key)) return true;
-
-		return false;
-	}
-
-	/** Replaces escaped characters with their original form. */
-	private static String replaceEscaped(String line) {
-		for (int i = 0; i < escaped.length; i++)
-			line = line.replaceAll(escaped[i], nonEscaped[i]);
-		
-		// Checks if this line should be protected with double brackets.
-		for (String key : doubleBrackets) if (line.startsWith(key)) line = line.replace("= {", "= {{").replace("},", "}},");
-		
-		return line;
-	}
-
-	/** Counts the number of authors in the author line. */
-	private static int countAuthors(String line) {
-		boolean openQuote = false;
-		boolean openBrackets = true;
-		int authorCount = 0;
-		int len = line.length();
-		for (int i = 0; i < len; i++) {
-			char c = line.charAt(i);
-			if ((c == '"') && (i != 0) && (line.charAt(i - 1) != '\\')) openQuote = !openQuote;
-			else if ((c == '{') || (c == '}')) openBrackets = !openBrackets;
-			else if (!openQuote && !openBrackets && (c == 'a') && (i != 0) && (line.substring(i - 1).startsWith(" and "))) authorCount++;
-		}
-		return authorCount + 1;
-	}
-
-	/** Collapses the author/editor list to "X and others". */
-	private static String collapseAuthors(String line) {
-		boolean openQuote = false;
-		boolean openBrackets = true;
-		int andIdx = -1;
-		int len = line.length();
-		for (int i = 0; andIdx == -1 && i < len; i++) {
-			char c = line.charAt(i);
-			if ((c == '"') && (i != 0) && (line.charAt(i - 1) != '\\')) openQuote = !openQuote;
-			else if ((c == '{') || (c == '}')) openBrackets = !openBrackets;
-			else if (!openQuote && !openBrackets && (c == 'a') && (i != 0) && (line.substring(i - 1).startsWith(" and "))) andIdx = i + 3;
-		}
-		if (andIdx != -1) line = line.substring(0, andIdx) + " others},";
-		return line;
-	}
 }
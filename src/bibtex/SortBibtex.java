@@ -1,60 +1,252 @@
 package bibtex;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Scanner;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
 
+import util.EntrySequencer;
 import bibtex.domain.BibtexEntry;
 
+/**
+ * Sorts the entries of a BibTeX file by year (most recent first) and title. The title and year of each entry are read
+ * as its lines are read. If the entries take more memory than MEMORY_BUDGET, they're sorted in runs that are written
+ * to temporary files (on worker threads, while the next run is read) and then merged, so files larger than the heap can
+ * be sorted.
+ *
+ * Entries with the same year and title are reported and, unless KEEP_DUPLICATES is false, kept in the output in their
+ * original order.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
 public class SortBibtex {
 	private static final String INPUT_FILE = "input.bib";
-	
+
 	private static final String OUTPUT_FILE = "output.bib";
-	
-	public static void main(String[] args) throws FileNotFoundException {
-		// Creates a sorted set of entries.
-		SortedSet<BibtexEntry> entries = new TreeSet<>();
-		
-		// Uses a buffer for entries.
-		StringBuilder builder = new StringBuilder();
-		
-		// Reads the input file line by line.
-		try (Scanner in = new Scanner(new File(INPUT_FILE))) {
-			while (in.hasNextLine()) {
-				String line = in.nextLine();
-				String trimmed = line.trim();
-				
-				// If it's the beginning of an entry, clears the buffer and starts a new entry.
-				if (trimmed.startsWith("@")) {
-					builder = new StringBuilder();
-					builder.append(line);
+
+	/** Number of threads that sort and write the runs. */
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	/** Approximate amount of memory (in bytes) that the entries being sorted can take, shared by all threads. */
+	private static final long MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
+	/** If entries with the same year and title should all be in the output (otherwise, only the first one is). */
+	private static final boolean KEEP_DUPLICATES = true;
+
+	public static void main(String[] args) throws IOException {
+		// Runs written to temporary files, in order. Runs are sorted on worker threads, at most one per thread at a time.
+		final List<File> runs = new ArrayList<>();
+		EntrySequencer.Sink<File> sink = new EntrySequencer.Sink<File>() {
+			@Override
+			public void accept(File run) {
+				runs.add(run);
+			}
+		};
+
+		List<BibtexEntry> batch = new ArrayList<>();
+		long batchSize = 0, runBudget = MEMORY_BUDGET / (THREADS + 1);
+		boolean spilled = false;
+		int count = 0;
+
+		try {
+			// Reads the input file line by line, using a buffer for entries.
+			try (BufferedReader in = new BufferedReader(new FileReader(INPUT_FILE)); EntrySequencer<File> sequencer = new EntrySequencer<>(THREADS, THREADS, sink)) {
+				StringBuilder builder = new StringBuilder();
+				String line, title = null;
+				int year = 0;
+				while ((line = in.readLine()) != null) {
+					String trimmed = line.trim();
+
+					// If it's the beginning of an entry, clears the buffer and starts a new entry.
+					if (trimmed.startsWith("@")) {
+						builder.setLength(0);
+						builder.append(line);
+						title = null;
+						year = 0;
+					}
+
+					// If it's the end of an entry, finish the buffer and add it to the batch. Spills the batch if it's too big.
+					else if (trimmed.startsWith("}")) {
+						builder.append(line);
+						BibtexEntry entry = new BibtexEntry(builder.toString(), title, year);
+						batch.add(entry);
+						count++;
+						batchSize += estimateSize(entry);
+						if (batchSize > runBudget) {
+							spill(sequencer, batch);
+							batch = new ArrayList<>();
+							batchSize = 0;
+							spilled = true;
+						}
+					}
+
+					// Otherwise, append the line to the buffer, looking for the title and year.
+					else {
+						builder.append(line);
+						String lineTitle = BibtexEntry.parseTitle(trimmed);
+						if (lineTitle != null) title = lineTitle;
+						if (trimmed.startsWith("year")) year = BibtexEntry.parseYear(trimmed);
+					}
+					builder.append('\n');
+				}
+
+				// If something has been spilled, so is the rest, to be merged.
+				if (spilled && !batch.isEmpty()) spill(sequencer, batch);
+			}
+
+			// Writes the entries, sorted in memory or merged from the runs, to the output.
+			try (SortedOutput out = new SortedOutput(new File(OUTPUT_FILE))) {
+				if (spilled) merge(runs, out);
+				else {
+					Collections.sort(batch);
+					for (BibtexEntry entry : batch) out.write(entry);
 				}
-				
-				// If it's the end of an entry, finish the buffer and add it to the set.
-				else if (trimmed.startsWith("}")) {
-					builder.append(line);
-					BibtexEntry entry = new BibtexEntry(builder.toString());
-					//if (entries.contains(entry)) System.out.println(entry);		// Uncomment if you want to spot duplicates.
-					entries.add(entry);
+				System.out.printf("Done! Sorted %d BibTeX entries from %s (%d temporary runs, %d duplicates %s).%n", count, INPUT_FILE, runs.size(), out.duplicates, KEEP_DUPLICATES ? "kept" : "dropped");
+			}
+		}
+		finally {
+			for (File run : runs) run.delete();
+		}
+	}
+
+	/** Estimates the memory (in bytes) taken by an entry. */
+	private static long estimateSize(BibtexEntry entry) {
+		return 2L * (entry.toString().length() + entry.getTitle().length()) + 128;
+	}
+
+	/** Submits a batch of entries to be sorted (stably, keeping duplicates in order) and written to a temporary file. */
+	private static void spill(EntrySequencer<File> sequencer, final List<BibtexEntry> batch) throws IOException {
+		sequencer.submit(new Callable<File>() {
+			@Override
+			public File call() throws IOException {
+				Collections.sort(batch);
+				File run = File.createTempFile("sortbibtex-", ".run");
+				run.deleteOnExit();
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+					for (BibtexEntry entry : batch) {
+						out.writeBoolean(true);
+						out.writeInt(entry.getYear());
+						writeString(out, entry.getTitle());
+						writeString(out, entry.toString());
+					}
+					out.writeBoolean(false);
 				}
-				
-				// Otherwise, only append the line to the buffer.
-				else builder.append(line);
-				builder.append('\n');
+				return run;
+			}
+		});
+	}
+
+	/** Writes a string to a run in UTF-8, prefixed by its length in bytes (writeUTF() is limited to 64 KB). */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/** Reads a string written by writeString(). */
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** Merges the sorted runs. Equal entries are taken from the earliest run first, so the order of duplicates is kept. */
+	private static void merge(List<File> runs, SortedOutput out) throws IOException {
+		PriorityQueue<RunReader> queue = new PriorityQueue<>(runs.size(), new Comparator<RunReader>() {
+			@Override
+			public int compare(RunReader a, RunReader b) {
+				int cmp = a.current.compareTo(b.current);
+				return (cmp != 0) ? cmp : Integer.compare(a.index, b.index);
+			}
+		});
+		List<RunReader> readers = new ArrayList<>();
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				RunReader reader = new RunReader(runs.get(i), i);
+				readers.add(reader);
+				if (reader.advance()) queue.add(reader);
+			}
+			while (!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				out.write(reader.current);
+				if (reader.advance()) queue.add(reader);
+			}
+		}
+		finally {
+			for (RunReader reader : readers) reader.close();
+		}
+	}
+
+	/** Reads the entries of a run, one at a time. */
+	private static class RunReader implements Closeable {
+		private DataInputStream in;
+		private int index;
+		private BibtexEntry current;
+
+		RunReader(File run, int index) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+			this.index = index;
+		}
+
+		/** Reads the next entry of the run, returning false if there are no more. */
+		boolean advance() throws IOException {
+			if (!in.readBoolean()) {
+				current = null;
+				return false;
 			}
+			int year = in.readInt();
+			String title = readString(in);
+			String text = readString(in);
+			current = new BibtexEntry(text, title, year);
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/** Writes the sorted entries to the output, reporting (and possibly dropping) duplicates. */
+	private static class SortedOutput implements Closeable {
+		private PrintWriter out;
+		private BibtexEntry previous;
+		private int duplicates;
+
+		SortedOutput(File file) throws IOException {
+			out = new PrintWriter(file);
 		}
-		
-		// Writes the entries, now sorted in the set, to the output.
-		try (PrintWriter out = new PrintWriter(new File(OUTPUT_FILE))) {
-			for (BibtexEntry entry : entries) {
-				out.println(entry);
-				out.println();
+
+		void write(BibtexEntry entry) {
+			if (previous != null && previous.compareTo(entry) == 0) {
+				duplicates++;
+				System.out.printf("Duplicate: %d, %s%n", entry.getYear(), entry.getTitle());
+				if (!KEEP_DUPLICATES) return;
 			}
+			else previous = entry;
+			out.println(entry);
+			out.println();
+		}
+
+		@Override
+		public void close() {
+			out.close();
 		}
-		
-		System.out.println("Done! Sorted " + entries.size() + " BibTeX entries from " + INPUT_FILE);
 	}
 }
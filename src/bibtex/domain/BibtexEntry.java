@@ -1,21 +1,20 @@
 package bibtex.domain;
 
-import java.util.Scanner;
-
 /**
- * TODO: document this type.
+ * A BibTeX entry, as text, with the title and year that are used to sort it: by year (most recent first), then by
+ * title.
  *
  * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
  * @version 1.0
  */
 public class BibtexEntry implements Comparable<BibtexEntry> {
-	/** TODO: document this field. */
+	/** Title of the publication (between double brackets in the entry). */
 	private String title;
 
-	/** TODO: document this field. */
+	/** Year of the publication. */
 	private int year;
 
-	/** TODO: document this field. */
+	/** Text of the entry. */
 	private String entry;
 
 	/** Constructor. */
@@ -23,31 +22,66 @@ public class BibtexEntry implements Comparable<BibtexEntry> {
 		this.entry = entry;
 
 		// Looks for the title and the year.
-		Scanner scanner = new Scanner(entry);
-		while (scanner.hasNextLine()) {
-			String line = scanner.nextLine().trim();
-			if (line.startsWith("title")) {
-				int from = line.indexOf("{{");
-				int to = line.lastIndexOf("}}");
-				title = line.substring(from + 2, to);
-			}
-			if (line.startsWith("year")) {
-				int from = line.indexOf("{");
-				int to = line.lastIndexOf("}");
-				year = Integer.parseInt(line.substring(from + 1, to));
-			}
+		int from = 0, len = entry.length();
+		while (from < len) {
+			int to = entry.indexOf('\n', from);
+			if (to == -1) to = len;
+			String line = entry.substring(from, to).trim();
+			String lineTitle = parseTitle(line);
+			if (lineTitle != null) title = lineTitle;
+			if (line.startsWith("year")) year = parseYear(line);
+			from = to + 1;
+		}
+	}
+
+	/** Constructor for entries whose title and year have already been parsed. */
+	public BibtexEntry(String entry, String title, int year) {
+		this.entry = entry;
+		this.title = title;
+		this.year = year;
+	}
+
+	/** Returns the title of a (trimmed) title line of an entry, or null if it's not a title line. */
+	public static String parseTitle(String line) {
+		if (!line.startsWith("title")) return null;
+		int from = line.indexOf("{{"), to = line.lastIndexOf("}}");
+		if (from != -1 && to > from) return line.substring(from + 2, to);
+		from = line.indexOf('{');
+		to = line.lastIndexOf('}');
+		return (from != -1 && to > from) ? line.substring(from + 1, to) : "";
+	}
+
+	/** Returns the year of a (trimmed) year line of an entry, or 0 if it doesn't have a valid year. */
+	public static int parseYear(String line) {
+		int from = line.indexOf("{"), to = line.lastIndexOf("}");
+		if (from == -1 || to <= from) return 0;
+		try {
+			return Integer.parseInt(line.substring(from + 1, to).trim());
 		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/** Getter for title. */
+	public String getTitle() {
+		return (title == null) ? "" : title;
+	}
+
+	/** Getter for year. */
+	public int getYear() {
+		return year;
 	}
 
 	/** @see java.lang.Comparable#compareTo(java.lang.Object) */
 	@Override
 	public int compareTo(BibtexEntry o) {
 		// Compare first by year, descending.
-		int cmp = o.year - year;
+		int cmp = Integer.compare(o.year, year);
 		if (cmp != 0) return cmp;
 
 		// If same year, compare by title, ascending.
-		return title.compareTo(o.title);
+		return getTitle().compareTo(o.getTitle());
 	}
 
 	/** @see java.lang.Object#toString() */
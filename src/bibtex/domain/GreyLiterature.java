@@ -1,6 +1,9 @@
 package bibtex.domain;
 
 public abstract class GreyLiterature extends Publication {
+	/** Serialization version. */
+	private static final long serialVersionUID = 1L;
+
 	/** TODO: document this field. */
 	protected String institution;
 	
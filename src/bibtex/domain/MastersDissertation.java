@@ -1,6 +1,9 @@
 package bibtex.domain;
 
 public class MastersDissertation extends GreyLiterature {
+	/** Serialization version. */
+	private static final long serialVersionUID = 1L;
+
 	/** Constructor. */
 	public MastersDissertation(String bibtexKey, String title, int year, String institution, String ... authors) {
 		super(bibtexKey, title, year, institution, authors);
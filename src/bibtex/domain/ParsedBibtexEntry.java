@@ -0,0 +1,97 @@
+package bibtex.domain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A BibTeX entry read by BibtexParser: its type (e.g., inproceedings), its key and its fields, in order, with their
+ * values exactly as they were in the file (including brackets or quotes). Also records the file it came from.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class ParsedBibtexEntry {
+	/** LaTeX commands (e.g., \'{e}, \c c, \&), removed when converting values to plain text. */
+	private static final Pattern LATEX_COMMAND_PATTERN = Pattern.compile("\\\\(?:[a-zA-Z]+\\s?|.)");
+
+	/** Brackets and quotes around values, removed when converting them to plain text. */
+	private static final Pattern DELIMITERS_PATTERN = Pattern.compile("[{}\"]");
+
+	/** Type of the entry, in lower case. */
+	private String type;
+
+	/** Key of the entry. */
+	private String key;
+
+	/** Fields of the entry (names in lower case), in order. */
+	private Map<String, String> fields = new LinkedHashMap<>();
+
+	/** Name of the file the entry came from. */
+	private String source;
+
+	/** Constructor. */
+	public ParsedBibtexEntry(String type, String key, String source) {
+		this.type = type;
+		this.key = key;
+		this.source = source;
+	}
+
+	/** Getter for type. */
+	public String getType() {
+		return type;
+	}
+
+	/** Getter for key. */
+	public String getKey() {
+		return key;
+	}
+
+	/** Getter for source. */
+	public String getSource() {
+		return source;
+	}
+
+	/** Getter for fields. */
+	public Map<String, String> getFields() {
+		return fields;
+	}
+
+	/** Returns the value of a field as it was in the file, or null if the entry doesn't have it. */
+	public String getField(String name) {
+		return fields.get(name);
+	}
+
+	/** Returns the value of a field without LaTeX commands, brackets and quotes, or an empty string if there isn't one. */
+	public String getPlainField(String name) {
+		String value = fields.get(name);
+		if (value == null) return "";
+		return DELIMITERS_PATTERN.matcher(LATEX_COMMAND_PATTERN.matcher(value).replaceAll("")).replaceAll("").trim();
+	}
+
+	/** Returns the year of the publication, or 0 if it doesn't have a valid one. */
+	public int getYear() {
+		String year = getPlainField("year");
+		try {
+			return year.isEmpty() ? 0 : Integer.parseInt(year);
+		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/** Produces the BibTeX code of the entry, one field per line. */
+	public String toBibtex() {
+		StringBuilder builder = new StringBuilder();
+		builder.append('@').append(type).append('{').append(key);
+		for (Map.Entry<String, String> field : fields.entrySet()) builder.append(",\n ").append(field.getKey()).append(" = ").append(field.getValue());
+		builder.append("\n}\n");
+		return builder.toString();
+	}
+
+	/** @see java.lang.Object#toString() */
+	@Override
+	public String toString() {
+		return key + " (" + source + ")";
+	}
+}
@@ -1,9 +1,13 @@
 package bibtex.domain;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-public abstract class Publication implements Comparable<Publication> {
+public abstract class Publication implements Comparable<Publication>, Serializable {
+	/** Serialization version. */
+	private static final long serialVersionUID = 1L;
+
 	/** TODO: document this field. */
 	protected String bibtexKey;
 	
@@ -1,12 +1,12 @@
 package sysmap;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.Reader;
 import java.io.StringReader;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
 import org.jbibtex.BibTeXDatabase;
 import org.jbibtex.BibTeXEntry;
@@ -20,6 +20,15 @@ import org.jbibtex.Key;
  * @version 1.0
  */
 public class BibTeXExportedDataParser implements ExportedDataParser {
+	/** BibTeX key for the keywords. */
+	private static final Key KEY_KEYWORDS = new Key("keywords");
+
+	/** BibTeX key for the abstract. */
+	private static final Key KEY_ABSTRACT = new Key("abstract");
+
+	/** Beginning of string definitions, which are not entries. */
+	private static final String STRING_PREFIX = "@string";
+
 	private String source;
 
 	/** Constructor. */
@@ -34,17 +43,37 @@ public class BibTeXExportedDataParser implements ExportedDataParser {
 	/** @see sysmap.ExportedDataParser#parseExportedData(java.io.File) */
 	@Override
 	public List<Publication> parseExportedData(File file) throws Exception {
-		List<Publication> publications = new ArrayList<>();
+		PublicationCollector collector = new PublicationCollector();
+		parseExportedData(file, collector);
+		return collector.getPublications();
+	}
 
-		StringBuilder builder = new StringBuilder();
-		try (Scanner scanner = new Scanner(file)) {
+	/**
+	 * Reads the file one entry at a time, fixing the keywords lines on the fly and parsing each entry separately, so only
+	 * one entry is kept in memory at any given time. An entry starts at a line beginning with @ that is not inside the
+	 * braces of the previous entry (e.g., in a multi-line abstract). String definitions (@string) are kept and given to
+	 * the parser together with each entry, so entries can refer to the macros defined before them.
+	 * 
+	 * @see sysmap.ExportedDataParser#parseExportedData(java.io.File, sysmap.PublicationHandler)
+	 */
+	@Override
+	public void parseExportedData(File file, PublicationHandler handler) throws Exception {
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			StringBuilder macros = new StringBuilder();
+			StringBuilder builder = new StringBuilder();
 			StringBuilder keywordsBuilder = null;
+			int depth = 0;
 
-			while (scanner.hasNextLine()) {
-				String line = scanner.nextLine().trim();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
 
-				if (line != null && line.length() > 0) {
-					if (line.startsWith("keywords")) {
+				if (line.length() > 0) {
+					// Keeps track of the braces, so only the fields of the entry and the beginning of new entries are recognized.
+					int lineDepth = depth;
+					depth = Math.max(0, depth + countBraces(line));
+
+					if (lineDepth == 1 && line.startsWith("keywords")) {
 						if (keywordsBuilder == null) keywordsBuilder = new StringBuilder("keywords = \"");
 						line = line.substring(line.indexOf('=') + 1).replace('"', ' ').trim();
 						keywordsBuilder.append(line).append(' ');
@@ -52,17 +81,57 @@ public class BibTeXExportedDataParser implements ExportedDataParser {
 					}
 
 					else if (keywordsBuilder != null) {
-						keywordsBuilder.append("\",");
-						builder.append(keywordsBuilder.toString().replace(" ,", ",")).append('\n');
+						appendKeywords(builder, keywordsBuilder);
 						keywordsBuilder = null;
 					}
 
+					// A new entry begins, so the previous one is complete and can be parsed.
+					if (lineDepth == 0 && line.startsWith("@")) {
+						processEntry(macros, builder, handler);
+						builder.setLength(0);
+					}
+
 					builder.append(line).append('\n');
 				}
 			}
+
+			// Parses the last entry.
+			if (keywordsBuilder != null) appendKeywords(builder, keywordsBuilder);
+			processEntry(macros, builder, handler);
 		}
+	}
 
-		try (Reader reader = new StringReader(builder.toString())) {
+	/** Returns how many braces the line opens (or, if negative, closes). Escaped braces (\{ and \}) are not counted. */
+	private static int countBraces(String line) {
+		int count = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '\\') i++;
+			else if (c == '{') count++;
+			else if (c == '}') count--;
+		}
+		return count;
+	}
+
+	/** Closes the keywords field that has been built from the keywords lines and adds it to the entry. */
+	private void appendKeywords(StringBuilder builder, StringBuilder keywordsBuilder) {
+		keywordsBuilder.append("\",");
+		builder.append(keywordsBuilder.toString().replace(" ,", ",")).append('\n');
+	}
+
+	/** Keeps the contents of the builder if they are a string definition, otherwise parses them as an entry. */
+	private void processEntry(StringBuilder macros, StringBuilder builder, PublicationHandler handler) throws Exception {
+		if (builder.length() == 0) return;
+		if (builder.length() >= STRING_PREFIX.length() && builder.substring(0, STRING_PREFIX.length()).equalsIgnoreCase(STRING_PREFIX)) macros.append(builder);
+		else parseEntries(macros, builder, handler);
+	}
+
+	/**
+	 * Parses the BibTeX contents of the builder (usually a single entry), preceded by the string definitions read so far,
+	 * and passes the publications to the handler.
+	 */
+	private void parseEntries(StringBuilder macros, StringBuilder builder, PublicationHandler handler) throws Exception {
+		try (Reader reader = new StringReader(macros.length() == 0 ? builder.toString() : macros + builder.toString())) {
 			BibTeXParser parser = new BibTeXParser();
 			BibTeXDatabase database = parser.parse(reader);
 
@@ -77,17 +146,14 @@ public class BibTeXExportedDataParser implements ExportedDataParser {
 				else year = Integer.parseInt(entry.getField(BibTeXEntry.KEY_YEAR).toUserString());
 
 				String keywords = "";
-				if (entry.getField(new Key("keywords")) != null) keywords = makePlain(entry.getField(new Key("keywords")).toUserString());
+				if (entry.getField(KEY_KEYWORDS) != null) keywords = makePlain(entry.getField(KEY_KEYWORDS).toUserString());
 
 				String abztract = "";
-				if (entry.getField(new Key("abstract")) != null) abztract = makePlain(entry.getField(new Key("abstract")).toUserString());
+				if (entry.getField(KEY_ABSTRACT) != null) abztract = makePlain(entry.getField(KEY_ABSTRACT).toUserString());
 
-				Publication publication = new Publication(title, year, keywords, abztract, source);
-				publications.add(publication);
+				handler.handle(new Publication(title, year, keywords, abztract, source));
 			}
 		}
-
-		return publications;
 	}
 
 	/** @see sysmap.ExportedDataParser#getSource() */
@@ -0,0 +1,103 @@
+package sysmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser of boolean queries in the syntax used by the search engines of digital libraries, shared by
+ * KeywordQuery and PublicationIndex. Terms are quoted phrases or single words; AND has precedence over OR, terms
+ * without an operator between them are joined with AND and parentheses can be used for grouping. Subclasses build the
+ * nodes of their own expression trees.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+abstract class BooleanQueryParser<N> {
+	/** The query being parsed. */
+	private String query;
+
+	/** Tokens of the query: parentheses, operators and terms (quoted terms keep their opening quote). */
+	private List<String> tokens = new ArrayList<>();
+
+	/** Position of the next token. */
+	private int pos = 0;
+
+	/** Constructor. */
+	BooleanQueryParser(String query) {
+		this.query = query;
+		for (int i = 0; i < query.length();) {
+			char c = query.charAt(i);
+			if (Character.isWhitespace(c)) i++;
+			else if (c == '(' || c == ')') tokens.add(String.valueOf(query.charAt(i++)));
+			else if (c == '"') {
+				int end = query.indexOf('"', i + 1);
+				if (end < 0) throw new IllegalArgumentException("Unclosed quote in query: " + query);
+				tokens.add(query.substring(i, end));
+				i = end + 1;
+			}
+			else {
+				int end = i;
+				while (end < query.length() && !Character.isWhitespace(query.charAt(end)) && "()\"".indexOf(query.charAt(end)) < 0) end++;
+				tokens.add(query.substring(i, end));
+				i = end;
+			}
+		}
+	}
+
+	/** Builds the node of a term. Quoted is true for terms that were given between quotes. */
+	abstract N term(String text, boolean quoted);
+
+	/** Builds the node of an operation. And is true for conjunctions and false for disjunctions. */
+	abstract N operation(boolean and, List<N> operands);
+
+	/** Parses the whole query, throwing IllegalArgumentException if it's malformed. */
+	N parse() {
+		N node = parseOr();
+		if (pos < tokens.size()) throw new IllegalArgumentException("Unexpected " + tokens.get(pos) + " in query: " + query);
+		return node;
+	}
+
+	private String peek() {
+		return (pos < tokens.size()) ? tokens.get(pos) : null;
+	}
+
+	/** Parses terms joined by OR. */
+	private N parseOr() {
+		List<N> operands = new ArrayList<>();
+		operands.add(parseAnd());
+		while ("OR".equals(peek())) {
+			pos++;
+			operands.add(parseAnd());
+		}
+		return (operands.size() == 1) ? operands.get(0) : operation(false, operands);
+	}
+
+	/** Parses terms joined by AND (explicitly or not). */
+	private N parseAnd() {
+		List<N> operands = new ArrayList<>();
+		operands.add(parseTerm());
+		String token;
+		while ((token = peek()) != null && !"OR".equals(token) && !")".equals(token)) {
+			if ("AND".equals(token)) pos++;
+			operands.add(parseTerm());
+		}
+		return (operands.size() == 1) ? operands.get(0) : operation(true, operands);
+	}
+
+	/** Parses a term or a parenthesized expression. */
+	private N parseTerm() {
+		String token = peek();
+		if (token == null || ")".equals(token) || "AND".equals(token) || "OR".equals(token)) throw new IllegalArgumentException("Missing term in query: " + query);
+		pos++;
+		if ("(".equals(token)) {
+			N node = parseOr();
+			if (!")".equals(peek())) throw new IllegalArgumentException("Unclosed parenthesis in query: " + query);
+			pos++;
+			return node;
+		}
+		boolean quoted = token.startsWith("\"");
+		String text = quoted ? token.substring(1) : token;
+		if (text.isEmpty()) throw new IllegalArgumentException("Empty term in query: " + query);
+		return term(text, quoted);
+	}
+}
@@ -1,40 +1,57 @@
 package sysmap;
 
+import java.io.CharArrayReader;
 import java.io.File;
 import java.io.FileReader;
-import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
 /**
- * TODO: document this type.
+ * Parses data exported in CSV (or other delimited formats, e.g. TDF) by sources such as ACM, IEEE and Scopus, given
+ * the indexes of the columns that contain year, title, keywords and abstract.
+ *
+ * Files larger than PARALLEL_PARSING_MIN_SIZE are split in chunks at record boundaries (taking quoted cells into
+ * account) and the chunks are parsed in parallel on a ForkJoinPool. Publications are returned in the same order as in
+ * the file either way.
  *
  * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
  * @version 1.0
  */
 public class CSVExportedDataParser implements ExportedDataParser {
+	/** Minimum size of the file (in bytes) for it to be parsed in parallel chunks. */
+	private static final long PARALLEL_PARSING_MIN_SIZE = 8L * 1024 * 1024;
+
+	/** Approximate size of each chunk (in characters) when parsing in parallel. */
+	private static final int CHUNK_SIZE = 2 * 1024 * 1024;
+
+	/** Pool that parses the chunks, shared by all parsers. */
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
 	private CSVFormat format;
-	
+
 	private String source;
-	
+
 	private int yearIdx;
-	
+
 	private int titleIdx;
-	
+
 	private int keywordsIdx;
-	
+
 	private int abstractIdx;
-	
+
 	/** Constructor. */
 	public CSVExportedDataParser(String source, int yearIdx, int titleIdx, int keywordsIdx, int abstractIdx) {
 		this(source, yearIdx, titleIdx, keywordsIdx, abstractIdx, CSVFormat.DEFAULT);
 	}
-	
+
 	public CSVExportedDataParser(String source, int yearIdx, int titleIdx, int keywordsIdx, int abstractIdx, CSVFormat format) {
 		this.source = source;
 		this.yearIdx = yearIdx;
@@ -43,47 +60,191 @@ public class CSVExportedDataParser implements ExportedDataParser {
 		this.abstractIdx = abstractIdx;
 		this.format = format;
 	}
-	
-	private int parseYear(String yearData, long recordNumber) {
-		if (yearData.matches("\\d{4}")) return Integer.parseInt(yearData);
-				
-		String[] data = yearData.split(" ");
-		for (int i = 0; i < data.length; i++) if (data[i].matches("\\d{4}")) return Integer.parseInt(data[i]);
-		
-		System.out.printf("%s: line %d has publication with unrecognizable year: %s! Using 0 as year.%n", source, recordNumber, yearData);
+
+	private int parseYear(String yearData, long lineNumber) {
+		int year = YearExtractor.extract(yearData);
+		if (year != YearExtractor.NO_YEAR) return year;
+
+		System.out.printf("%s: line %d has publication with unrecognizable year: %s! Using 0 as year.%n", source, lineNumber, yearData);
 		return 0;
 	}
-	
+
 	@Override
 	public List<Publication> parseExportedData(File file) throws Exception {
-		List<Publication> publications = new ArrayList<>();
-		
+		if (file.length() >= PARALLEL_PARSING_MIN_SIZE) return parseInChunks(file);
+
+		PublicationCollector collector = new PublicationCollector();
+		parseExportedData(file, collector);
+		return collector.getPublications();
+	}
+
+	@Override
+	public void parseExportedData(File file, PublicationHandler handler) throws Exception {
+		// Chunks are parsed in parallel, so publications are only handed over once all chunks are done.
+		if (file.length() >= PARALLEL_PARSING_MIN_SIZE) {
+			for (Publication publication : parseInChunks(file)) handler.handle(publication);
+			return;
+		}
+
+		try (Reader reader = new FileReader(file)) {
+			parseRecords(reader, 0, true, handler);
+		}
+	}
+
+	/**
+	 * Parses the records read from the reader, passing the publications to the handler, skipping the first record if
+	 * it's the header. Messages refer to the line where the record ends, counting blank lines and line breaks inside
+	 * quoted cells, and the offset (number of lines before the chunk) is added to it when parsing chunks of the file.
+	 */
+	private void parseRecords(Reader reader, long offset, boolean header, PublicationHandler handler) throws Exception {
+		CSVParser parser = new CSVParser(reader, format);
+
+		for (CSVRecord record : parser) {
+			long lineNumber = offset + parser.getCurrentLineNumber();
+			if (!header || record.getRecordNumber() > 1) {
+				int size = record.size();
+				if ((size <= titleIdx) || (record.get(titleIdx) == null) || (record.get(titleIdx).trim().length() == 0)) System.out.printf("%s: line %d has publication without title!%n", source, lineNumber);
+				else {
+					int year = 0;
+					if ((size <= yearIdx) || (record.get(yearIdx) == null) || (record.get(yearIdx).trim().length() == 0)) System.out.printf("%s: line %d (%s) has publication without year! Using 0 as year.%n", source, lineNumber, record.get(titleIdx));
+					else year = parseYear(record.get(yearIdx), lineNumber);
+
+					String keywords = (keywordsIdx > -1 && size > keywordsIdx) ? record.get(keywordsIdx) : "";
+					String abztract = (abstractIdx > -1 && size > abstractIdx) ? record.get(abstractIdx) : "";
+					Publication publication = new Publication(record.get(titleIdx), year, keywords, abztract, source);
+					handler.handle(publication);
+				}
+			}
+		}
+	}
+
+	/** Reads the whole file, splits it in chunks at record boundaries and parses the chunks in parallel. */
+	private List<Publication> parseInChunks(File file) throws Exception {
+		// Reads all the characters of the file.
+		char[] data = new char[(int) Math.min(file.length() + 1, Integer.MAX_VALUE - 8)];
+		int length = 0;
 		try (Reader reader = new FileReader(file)) {
-			CSVParser parser = new CSVParser(reader, format);
-			
-			for (CSVRecord record : parser) {
-				if (record.getRecordNumber() > 1) {
-					int size = record.size();
-					if ((size <= titleIdx) || (record.get(titleIdx) == null) || (record.get(titleIdx).trim().length() == 0)) System.out.printf("%s: line %d has publication without title!%n", source, record.getRecordNumber());
-					else {
-						int year = 0;
-						if ((size <= yearIdx) || (record.get(yearIdx) == null) || (record.get(yearIdx).trim().length() == 0)) System.out.printf("%s: line %d (%s) has publication without year! Using 0 as year.%n", source, record.getRecordNumber(), record.get(titleIdx));
-						else year = parseYear(record.get(yearIdx), record.getRecordNumber());
-						
-						String keywords = (keywordsIdx > -1 && size > keywordsIdx) ? record.get(keywordsIdx) : "";
-						String abztract = (abstractIdx > -1 && size > abstractIdx) ? record.get(abstractIdx) : "";
-						Publication publication = new Publication(record.get(titleIdx), year, keywords, abztract, source);
-						publications.add(publication);
-					}
-				}				
+			int read;
+			while ((read = reader.read(data, length, data.length - length)) != -1) {
+				length += read;
+				if (length == data.length) data = Arrays.copyOf(data, data.length * 2);
+			}
+		}
+
+		// Finds the boundaries of the chunks and parses them.
+		List<Chunk> chunks = split(data, length);
+		System.out.printf("%s: parsing %d characters in %d chunks...%n", source, length, chunks.size());
+		return pool.invoke(new ParseTask(data, chunks, 0, chunks.size()));
+	}
+
+	/**
+	 * Splits the data in chunks of approximately CHUNK_SIZE characters, ending each chunk at a line break that is not
+	 * inside a quoted cell. Delimiter, quote character and whether spaces around the cells are ignored are taken from the
+	 * format, as in CSVParser. Also counts the lines before each chunk (including blank lines and line breaks inside
+	 * quoted cells), so the line numbers in messages can be adjusted.
+	 */
+	private List<Chunk> split(char[] data, int length) {
+		List<Chunk> chunks = new ArrayList<>();
+		char delimiter = format.getDelimiter();
+		Character quoteCharacter = format.getQuoteCharacter();
+		boolean ignoreSurroundingSpaces = format.getIgnoreSurroundingSpaces();
+		boolean quoting = (quoteCharacter != null), quoted = false, tokenStart = true;
+		char quote = quoting ? quoteCharacter : 0;
+		int start = 0;
+		long lines = 0, linesBefore = 0;
+		for (int i = 0; i < length; i++) {
+			char c = data[i];
+
+			// Inside quotes, only a quote that is not doubled ends the quoted cell.
+			if (quoted) {
+				if (c == quote) {
+					if (i + 1 < length && data[i + 1] == quote) i++;
+					else quoted = false;
+				}
+				else if (c == '\n' || (c == '\r' && !(i + 1 < length && data[i + 1] == '\n'))) lines++;
 			}
+
+			// Outside quotes, a quote only starts a quoted cell at the beginning of the cell (possibly after spaces, if they are ignored).
+			else if (quoting && c == quote && tokenStart) quoted = true;
+			else if (c == delimiter) tokenStart = true;
+			else if (c == '\n' || c == '\r') {
+				if (c == '\r' && i + 1 < length && data[i + 1] == '\n') i++;
+				lines++;
+				tokenStart = true;
+
+				// Ends the chunk if it's big enough.
+				if (i + 1 - start >= CHUNK_SIZE) {
+					chunks.add(new Chunk(start, i + 1, linesBefore));
+					start = i + 1;
+					linesBefore = lines;
+				}
+				continue;
+			}
+			else if (ignoreSurroundingSpaces && tokenStart && Character.isWhitespace(c)) continue;
+
+			if (c != delimiter) tokenStart = false;
 		}
-		
-		return publications;
+		if (start < length) chunks.add(new Chunk(start, length, linesBefore));
+		return chunks;
 	}
-	
+
 	@Override
 	public String getSource() {
 		return source;
 	}
+
+	/** A part of the file, with the number of lines that come before it. */
+	private static class Chunk {
+		private int start;
+		private int end;
+		private long linesBefore;
+
+		Chunk(int start, int end, long linesBefore) {
+			this.start = start;
+			this.end = end;
+			this.linesBefore = linesBefore;
+		}
+	}
+
+	/** Parses a range of chunks, splitting it in halves until there's a single chunk to parse. */
+	private class ParseTask extends RecursiveTask<List<Publication>> {
+		private static final long serialVersionUID = 1L;
+
+		private char[] data;
+		private List<Chunk> chunks;
+		private int from;
+		private int to;
+
+		ParseTask(char[] data, List<Chunk> chunks, int from, int to) {
+			this.data = data;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<Publication> compute() {
+			// Parses a single chunk directly.
+			if (to - from == 1) {
+				Chunk chunk = chunks.get(from);
+				PublicationCollector collector = new PublicationCollector();
+				try (Reader reader = new CharArrayReader(data, chunk.start, chunk.end - chunk.start)) {
+					parseRecords(reader, chunk.linesBefore, chunk.start == 0, collector);
+				}
+				catch (Exception e) {
+					throw new IllegalStateException(source + ": could not parse chunk starting at line " + (chunk.linesBefore + 1), e);
+				}
+				return collector.getPublications();
+			}
+
+			// Otherwise, parses the first half in another thread and the second one in this thread, concatenating them in order.
+			int middle = (from + to) / 2;
+			ParseTask first = new ParseTask(data, chunks, from, middle);
+			first.fork();
+			List<Publication> second = new ParseTask(data, chunks, middle, to).compute();
+			List<Publication> publications = first.join();
+			publications.addAll(second);
+			return publications;
+		}
+	}
 }
@@ -0,0 +1,205 @@
+package sysmap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads the binary columnar files produced by ColumnarFileWriter. Each column is memory-mapped separately, so years and
+ * sources can be accessed directly by row number and the text columns that are not needed are never read from disk.
+ * Columns are mapped in windows of at most WINDOW_SIZE bytes, as a single mapping is limited to 2 GB.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class ColumnarFileReader implements Closeable {
+	/** Number of bits of the size of the windows in which the columns are mapped. */
+	private static final int WINDOW_BITS = 30;
+
+	/** Size of the windows in which the columns are mapped (1 GB, a multiple of the size of the fixed-size cells). */
+	private static final long WINDOW_SIZE = 1L << WINDOW_BITS;
+
+	/** The open file. */
+	private RandomAccessFile file;
+
+	/** Number of rows in the file. */
+	private int rowCount;
+
+	/** Names of the sources, by index. */
+	private String[] sourceNames;
+
+	/** Memory-mapped columns, each one in a sequence of windows. */
+	private ByteBuffer[][] columns = new ByteBuffer[ColumnarFileWriter.COLUMN_COUNT][];
+
+	/** Constructor. */
+	public ColumnarFileReader(File path) throws IOException {
+		file = new RandomAccessFile(path, "r");
+		try {
+			// Checks the magic bytes.
+			byte[] magic = new byte[ColumnarFileWriter.MAGIC.length];
+			file.readFully(magic);
+			if (!Arrays.equals(magic, ColumnarFileWriter.MAGIC)) throw new IOException(path.getName() + " is not a sysmap columnar file!");
+
+			// Reads the rest of the header.
+			rowCount = file.readInt();
+			sourceNames = new String[file.readInt()];
+			for (int i = 0; i < sourceNames.length; i++) {
+				byte[] bytes = new byte[file.readInt()];
+				file.readFully(bytes);
+				sourceNames[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			long[] sizes = new long[ColumnarFileWriter.COLUMN_COUNT];
+			for (int i = 0; i < sizes.length; i++) sizes[i] = file.readLong();
+
+			// Maps each column, in windows.
+			FileChannel channel = file.getChannel();
+			long position = file.getFilePointer();
+			for (int i = 0; i < sizes.length; i++) {
+				columns[i] = new ByteBuffer[(int) ((sizes[i] + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+				for (int w = 0; w < columns[i].length; w++) {
+					long offset = w * WINDOW_SIZE;
+					columns[i][w] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, Math.min(WINDOW_SIZE, sizes[i] - offset));
+				}
+				position += sizes[i];
+			}
+		}
+		catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/** Getter for rowCount. */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/** Getter for sourceNames. */
+	public String[] getSourceNames() {
+		return sourceNames;
+	}
+
+	/** Returns the year of the publication in the given row. */
+	public int getYear(int row) {
+		long index = row * 4L;
+		return columns[ColumnarFileWriter.YEARS][(int) (index >>> WINDOW_BITS)].getInt((int) (index & (WINDOW_SIZE - 1)));
+	}
+
+	/** Returns the names of the sources of the publication in the given row. */
+	public Set<String> getSources(int row) {
+		long index = row * 8L;
+		long mask = columns[ColumnarFileWriter.SOURCES][(int) (index >>> WINDOW_BITS)].getLong((int) (index & (WINDOW_SIZE - 1)));
+		Set<String> sources = new TreeSet<>();
+		for (int i = 0; i < sourceNames.length; i++) if ((mask & (1L << i)) != 0) sources.add(sourceNames[i]);
+		return sources;
+	}
+
+	/**
+	 * Iterates over the publications of the file in order. If includeTexts is false, keywords and abstracts are not read
+	 * (they are left empty), which is much faster when only titles are needed.
+	 */
+	public Iterator<Publication> iterator(final boolean includeTexts) {
+		// Uses its own views of the text columns, so more than one iteration can happen at the same time.
+		final ColumnCursor titles = new ColumnCursor(columns[ColumnarFileWriter.TITLES]);
+		final ColumnCursor keywords = new ColumnCursor(columns[ColumnarFileWriter.KEYWORDS]);
+		final ColumnCursor abstracts = new ColumnCursor(columns[ColumnarFileWriter.ABSTRACTS]);
+
+		return new Iterator<Publication>() {
+			private int row = 0;
+
+			private byte[] buffer = new byte[256];
+
+			@Override
+			public boolean hasNext() {
+				return row < rowCount;
+			}
+
+			@Override
+			public Publication next() {
+				if (row >= rowCount) throw new NoSuchElementException();
+
+				String title = readString(titles);
+				String keywordsText = includeTexts ? readString(keywords) : "";
+				String abstractText = includeTexts ? readString(abstracts) : "";
+
+				// Creates the publication with the first source and adds the others, if any.
+				Set<String> sources = getSources(row);
+				Iterator<String> sourceIterator = sources.iterator();
+				Publication publication = new Publication(title, getYear(row), keywordsText, abstractText, sourceIterator.hasNext() ? sourceIterator.next() : "");
+				while (sourceIterator.hasNext()) publication.addSource(sourceIterator.next());
+
+				row++;
+				return publication;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			/** Reads a length-prefixed UTF-8 string from the column, advancing its position. */
+			private String readString(ColumnCursor column) {
+				int length = column.readInt();
+				if (buffer.length < length) buffer = new byte[Math.max(length, buffer.length * 2)];
+				column.read(buffer, length);
+				return new String(buffer, 0, length, StandardCharsets.UTF_8);
+			}
+		};
+	}
+
+	/** Closes the file. The mapped columns are released by the garbage collector. */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/** Sequential reader of a column, moving from one window to the next as needed. Values can span two windows. */
+	private static class ColumnCursor {
+		/** Views of the windows of the column. */
+		private ByteBuffer[] windows;
+
+		/** Index of the window being read. */
+		private int current;
+
+		/** Buffer for values that span two windows. */
+		private byte[] scratch = new byte[4];
+
+		ColumnCursor(ByteBuffer[] columnWindows) {
+			windows = new ByteBuffer[columnWindows.length];
+			for (int i = 0; i < windows.length; i++) windows[i] = columnWindows[i].duplicate();
+		}
+
+		/** Reads a (big-endian) int, advancing the position. */
+		int readInt() {
+			if (current < windows.length && windows[current].remaining() >= 4) return windows[current].getInt();
+			read(scratch, 4);
+			return ((scratch[0] & 0xFF) << 24) | ((scratch[1] & 0xFF) << 16) | ((scratch[2] & 0xFF) << 8) | (scratch[3] & 0xFF);
+		}
+
+		/** Reads the given number of bytes into the array, advancing the position. */
+		void read(byte[] bytes, int length) {
+			int offset = 0;
+			while (offset < length) {
+				if (current == windows.length) throw new BufferUnderflowException();
+				ByteBuffer window = windows[current];
+				if (!window.hasRemaining()) {
+					current++;
+					continue;
+				}
+				int count = Math.min(window.remaining(), length - offset);
+				window.get(bytes, offset, count);
+				offset += count;
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package sysmap;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes publications to a compact binary columnar file, which can be used instead of the semicolon-separated CSV files
+ * to pass data between the stages of the systematic mapping scripts (see ColumnarFileReader). Contrary to the CSV
+ * files, any character can be used in the cells and a stage that needs only some of the columns (e.g., years and titles)
+ * doesn't have to read the others (e.g., abstracts).
+ *
+ * The file is organized as follows (integers are big-endian, strings are UTF-8):
+ *
+ * - Header: magic bytes (SYSMAPC1), number of rows, number of distinct sources followed by their names (each one
+ * prefixed by its length) and the size in bytes of each column;
+ *
+ * - Sources column: one long per row, a bitmask of the indexes of the sources in the header (so at most
+ * Publication.MAX_SOURCES, i.e. 64, different sources are supported);
+ *
+ * - Years column: one int per row;
+ *
+ * - Title, keywords and abstract columns: one string per row, each one prefixed by its length.
+ *
+ * Rows are written to temporary column files as they arrive and the final file is assembled when the writer is closed.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class ColumnarFileWriter implements Closeable {
+	/** Magic bytes at the beginning of the file. */
+	static final byte[] MAGIC = "SYSMAPC1".getBytes(StandardCharsets.US_ASCII);
+
+	/** Index of the sources column. */
+	static final int SOURCES = 0;
+
+	/** Index of the years column. */
+	static final int YEARS = 1;
+
+	/** Index of the titles column. */
+	static final int TITLES = 2;
+
+	/** Index of the keywords column. */
+	static final int KEYWORDS = 3;
+
+	/** Index of the abstracts column. */
+	static final int ABSTRACTS = 4;
+
+	/** Number of columns in the file. */
+	static final int COLUMN_COUNT = 5;
+
+	/** The file being written. */
+	private File file;
+
+	/** Dictionary of sources, mapping their names to their indexes. */
+	private Map<String, Integer> dictionary = new LinkedHashMap<>();
+
+	/** Temporary files that store the columns while rows are being written. */
+	private File[] columnFiles = new File[COLUMN_COUNT];
+
+	/** Streams to the temporary column files. */
+	private DataOutputStream[] columns = new DataOutputStream[COLUMN_COUNT];
+
+	/** Number of rows written so far. */
+	private int rowCount;
+
+	/** Constructor. */
+	public ColumnarFileWriter(File file) throws IOException {
+		this.file = file;
+		File folder = file.getAbsoluteFile().getParentFile();
+		for (int i = 0; i < COLUMN_COUNT; i++) {
+			columnFiles[i] = File.createTempFile(file.getName() + "-col" + i + "-", ".tmp", folder);
+			columns[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(columnFiles[i])));
+		}
+	}
+
+	/** Writes a publication as a new row of the file. */
+	public void write(Publication publication) throws IOException {
+		// Encodes the sources in a bitmask, adding new sources to the dictionary.
+		long sources = 0;
+		for (String source : publication.getSources()) {
+			Integer idx = dictionary.get(source);
+			if (idx == null) {
+				if (dictionary.size() == Publication.MAX_SOURCES) throw new IllegalStateException("Columnar files support at most " + Publication.MAX_SOURCES + " different sources!");
+				dictionary.put(source, idx = dictionary.size());
+			}
+			sources |= 1L << idx;
+		}
+
+		// Writes each piece of information in its column.
+		columns[SOURCES].writeLong(sources);
+		columns[YEARS].writeInt(publication.getYear());
+		writeString(columns[TITLES], publication.getTitle());
+		writeString(columns[KEYWORDS], publication.getKeywords());
+		writeString(columns[ABSTRACTS], publication.getAbztract());
+		rowCount++;
+	}
+
+	/** Writes the header, appends the columns to the file and deletes the temporary files. */
+	@Override
+	public void close() throws IOException {
+		try {
+			for (DataOutputStream column : columns) column.close();
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+				// Writes the header.
+				out.write(MAGIC);
+				out.writeInt(rowCount);
+				out.writeInt(dictionary.size());
+				for (String source : dictionary.keySet()) writeString(out, source);
+				for (File columnFile : columnFiles) out.writeLong(columnFile.length());
+
+				// Copies the columns.
+				for (File columnFile : columnFiles) Files.copy(columnFile.toPath(), out);
+			}
+		}
+		finally {
+			for (File columnFile : columnFiles) columnFile.delete();
+		}
+	}
+
+	/** Writes a string in UTF-8, prefixed by its length in bytes. Null strings are written as empty ones. */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = (value == null) ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,214 @@
+package sysmap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import web.HttpCache;
+
+/**
+ * Fetches and parses web pages for the scrapers of the systematic mapping scripts (e.g., ParseSpringer). Pages are
+ * fetched by a bounded pool of threads, so many of them can be downloaded at the same time, while a politeness delay is
+ * kept between requests to the same host. Requests that fail with server errors, "too many requests" responses or
+ * network problems are retried, waiting longer after each attempt.
+ *
+ * The result of each page parsed through submit() is saved in a progress file as soon as it's ready. If the scraper is
+ * interrupted and run again with the same progress file, these pages are not fetched again. Delete the progress file to
+ * start from scratch.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class Crawler implements Closeable {
+	/** Parses a fetched page and converts the result to and from the text saved in the progress file. */
+	public interface PageParser<T> {
+		/** Extracts the result from the page. */
+		T parse(String url, Document doc) throws Exception;
+
+		/** Converts the result to text, so it can be saved in the progress file. */
+		String encode(T result);
+
+		/** Converts the text saved in the progress file back to the result. */
+		T decode(String data);
+	}
+
+	/** Pool of threads that fetch the pages. */
+	private ExecutorService pool;
+
+	/** Minimum time between the beginning of two requests to the same host (in milliseconds). */
+	private long hostDelay;
+
+	/** Maximum number of times a request is retried. */
+	private int maxRetries;
+
+	/** Time to wait before the first retry (in milliseconds), doubled after each attempt. */
+	private long initialBackoff;
+
+	/** Timeout of each request (in milliseconds). */
+	private int timeout;
+
+	/** Earliest time in which the next request to each host can start. */
+	private Map<String, Long> hostSchedule = new HashMap<>();
+
+	/** Results saved in the progress file, indexed by the URLs of the pages. */
+	private Map<String, String> progress = new ConcurrentHashMap<>();
+
+	/** Writer of the progress file (null if progress is not saved). */
+	private PrintWriter progressOut;
+
+	/** Cache of the fetched pages (null if pages are not cached). */
+	private HttpCache cache;
+
+	/** Constructor. */
+	public Crawler(int maxConcurrency, long hostDelay, int maxRetries, long initialBackoff, int timeout, File progressFile) throws IOException {
+		this.hostDelay = hostDelay;
+		this.maxRetries = maxRetries;
+		this.initialBackoff = initialBackoff;
+		this.timeout = timeout;
+		pool = Executors.newFixedThreadPool(maxConcurrency);
+
+		// Loads the progress of previous runs and keeps the file open to add to it.
+		if (progressFile != null) {
+			if (progressFile.exists()) try (BufferedReader reader = new BufferedReader(new FileReader(progressFile))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int tab = line.indexOf('\t');
+					if (tab > 0) progress.put(line.substring(0, tab), unescape(line.substring(tab + 1)));
+				}
+			}
+			progressOut = new PrintWriter(new BufferedWriter(new FileWriter(progressFile, true)));
+		}
+	}
+
+	/** Setter for cache. */
+	public void setCache(HttpCache cache) {
+		this.cache = cache;
+	}
+
+	/** Number of pages whose results were loaded from the progress file or saved to it. */
+	public int getProgressCount() {
+		return progress.size();
+	}
+
+	/**
+	 * Fetches a page in the current thread, respecting the politeness delay of its host and retrying if the request
+	 * fails. Fetched pages are not saved in the progress file. Fresh pages in the cache (if any) are returned without
+	 * contacting the server, so the politeness delay doesn't apply to them.
+	 */
+	public Document fetch(String url) throws IOException, InterruptedException {
+		if (cache != null && cache.isFresh(url)) return cache.get(url, timeout);
+
+		long backoff = initialBackoff;
+		for (int attempt = 0;; attempt++) {
+			waitForHost(new URL(url).getHost());
+			try {
+				return (cache == null) ? Jsoup.connect(url).timeout(timeout).get() : cache.get(url, timeout);
+			}
+			catch (IOException e) {
+				// Client errors (other than too many requests) will not go away by retrying.
+				boolean retriable = !(e instanceof HttpStatusException) || isRetriable(((HttpStatusException) e).getStatusCode());
+				if (!retriable || attempt >= maxRetries) throw e;
+				System.out.printf("\tCould not fetch %s (%s), retrying in %d ms...%n", url, e, backoff);
+				Thread.sleep(backoff);
+				backoff *= 2;
+			}
+		}
+	}
+
+	/**
+	 * Fetches and parses a page in the pool, saving the result in the progress file. If the result of the page was
+	 * already saved by a previous run, it's decoded from the progress file instead.
+	 */
+	public <T> Future<T> submit(final String url, final PageParser<T> parser) {
+		return pool.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				String data = progress.get(url);
+				if (data != null) return parser.decode(data);
+
+				T result = parser.parse(url, fetch(url));
+				saveProgress(url, parser.encode(result));
+				return result;
+			}
+		});
+	}
+
+	/** Checks if a request that failed with the given HTTP status code should be retried. */
+	private static boolean isRetriable(int statusCode) {
+		return statusCode == 429 || statusCode >= 500;
+	}
+
+	/** Waits until a request can be made to the host, reserving the next slot for the current thread. */
+	private void waitForHost(String host) throws InterruptedException {
+		long start;
+		synchronized (hostSchedule) {
+			Long next = hostSchedule.get(host);
+			start = Math.max(System.currentTimeMillis(), (next == null) ? 0 : next);
+			hostSchedule.put(host, start + hostDelay);
+		}
+		long wait = start - System.currentTimeMillis();
+		if (wait > 0) Thread.sleep(wait);
+	}
+
+	/** Saves the result of a page in the progress file. */
+	private void saveProgress(String url, String data) {
+		progress.put(url, data);
+		if (progressOut != null) synchronized (progressOut) {
+			progressOut.println(url + '\t' + escape(data));
+			progressOut.flush();
+		}
+	}
+
+	/** Escapes backslashes, tabs and line breaks, so the text fits in a single line of the progress file. */
+	private static String escape(String data) {
+		return data.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	/** Reverts the escaping done by escape(). */
+	private static String unescape(String data) {
+		StringBuilder builder = new StringBuilder(data.length());
+		for (int i = 0; i < data.length(); i++) {
+			char c = data.charAt(i);
+			if (c == '\\' && i + 1 < data.length()) {
+				char next = data.charAt(++i);
+				builder.append((next == 't') ? '\t' : (next == 'n') ? '\n' : (next == 'r') ? '\r' : next);
+			}
+			else builder.append(c);
+		}
+		return builder.toString();
+	}
+
+	/** Waits for the pages that were submitted and closes the progress file. */
+	@Override
+	public void close() throws IOException {
+		pool.shutdown();
+		try {
+			while (!pool.awaitTermination(1, TimeUnit.MINUTES));
+		}
+		catch (InterruptedException e) {
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			if (progressOut != null) progressOut.close();
+		}
+	}
+}
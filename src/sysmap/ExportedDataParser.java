@@ -1,7 +1,6 @@
 package sysmap;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
 
 /**
@@ -12,6 +11,9 @@ import java.util.List;
  */
 public interface ExportedDataParser {
 	List<Publication> parseExportedData(File file) throws Exception;
+
+	/** Parses the file, passing each publication to the handler as soon as it is read. */
+	void parseExportedData(File file, PublicationHandler handler) throws Exception;
 	
 	String getSource();
 }
@@ -0,0 +1,191 @@
+package sysmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Boolean keyword query, in the syntax used by the search engines of digital libraries (see BooleanQueryParser), e.g.:
+ *
+ * ("requirements model" OR "goal model") AND ("runtime" OR "monitoring")
+ *
+ * Terms are quoted phrases or single words; AND has precedence over OR, terms without an operator between them are
+ * joined with AND and parentheses can be used for grouping. Terms match anywhere in the text (like String.contains()),
+ * ignoring case.
+ *
+ * The query is compiled once into an Aho-Corasick automaton with all the terms plus an AND/OR expression tree. To check
+ * a text, the automaton finds all the terms in a single pass over its characters and the tree is evaluated as terms are
+ * found, stopping as soon as the query is satisfied. Hence, the cost of checking a text doesn't grow with the number of
+ * terms. See http://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class KeywordQuery {
+	/** The query, as given. */
+	private String query;
+
+	/** The terms of the query, in lower case, indexed by their position in the automaton. */
+	private List<String> terms = new ArrayList<>();
+
+	/** Root of the expression tree. */
+	private Node expression;
+
+	/** Transitions of each state of the automaton. */
+	private List<Map<Character, Integer>> transitions = new ArrayList<>();
+
+	/** Failure transition of each state of the automaton. */
+	private int[] failures;
+
+	/** Terms that end at each state of the automaton (including the ones reached by failure transitions). */
+	private int[][] outputs;
+
+	/** Constructor. */
+	private KeywordQuery(String query) {
+		this.query = query;
+	}
+
+	/** Compiles a query, throwing IllegalArgumentException if it's malformed. */
+	public static KeywordQuery compile(String query) {
+		final KeywordQuery compiled = new KeywordQuery(query);
+		compiled.expression = new BooleanQueryParser<Node>(query) {
+			@Override
+			Node term(String text, boolean quoted) {
+				return new Term(compiled.addTerm(text));
+			}
+
+			@Override
+			Node operation(boolean and, List<Node> operands) {
+				return new Operation(and, operands);
+			}
+		}.parse();
+		compiled.buildAutomaton();
+		return compiled;
+	}
+
+	/** Getter for terms. */
+	public List<String> getTerms() {
+		return terms;
+	}
+
+	/** Checks if the text satisfies the query. */
+	public boolean matches(CharSequence text) {
+		boolean[] found = new boolean[terms.size()];
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = Character.toLowerCase(text.charAt(i));
+
+			// Follows failure transitions until there's a transition for the character (or the root is reached).
+			Integer next;
+			while ((next = transitions.get(state).get(c)) == null && state != 0) state = failures[state];
+			state = (next == null) ? 0 : next;
+
+			// Marks the terms found and evaluates the query if any of them is new.
+			boolean changed = false;
+			for (int term : outputs[state]) if (!found[term]) changed = found[term] = true;
+			if (changed && expression.evaluate(found)) return true;
+		}
+		return expression.evaluate(found);
+	}
+
+	/** Registers a term of the query, returning its index. Repeated terms are registered only once. */
+	private int addTerm(String term) {
+		String lower = term.toLowerCase();
+		int idx = terms.indexOf(lower);
+		if (idx < 0) {
+			idx = terms.size();
+			terms.add(lower);
+		}
+		return idx;
+	}
+
+	/** Builds the automaton: a trie of the terms plus failure transitions, computed breadth-first. */
+	private void buildAutomaton() {
+		// Builds the trie, recording which term ends at each state.
+		transitions.add(new HashMap<Character, Integer>());
+		List<List<Integer>> ends = new ArrayList<>();
+		ends.add(new ArrayList<Integer>());
+		for (int t = 0; t < terms.size(); t++) {
+			int state = 0;
+			for (char c : terms.get(t).toCharArray()) {
+				Integer next = transitions.get(state).get(c);
+				if (next == null) {
+					next = transitions.size();
+					transitions.add(new HashMap<Character, Integer>());
+					ends.add(new ArrayList<Integer>());
+					transitions.get(state).put(c, next);
+				}
+				state = next;
+			}
+			ends.get(state).add(t);
+		}
+
+		// Computes the failure transitions, merging the terms of the failure state into each state.
+		failures = new int[transitions.size()];
+		Queue<Integer> queue = new LinkedList<>(transitions.get(0).values());
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (Map.Entry<Character, Integer> entry : transitions.get(state).entrySet()) {
+				int child = entry.getValue();
+				int failure = failures[state];
+				while (failure != 0 && !transitions.get(failure).containsKey(entry.getKey())) failure = failures[failure];
+				Integer target = transitions.get(failure).get(entry.getKey());
+				failures[child] = (target == null || target == child) ? 0 : target;
+				ends.get(child).addAll(ends.get(failures[child]));
+				queue.add(child);
+			}
+		}
+
+		// Stores the terms of each state in arrays.
+		outputs = new int[ends.size()][];
+		for (int s = 0; s < outputs.length; s++) {
+			outputs[s] = new int[ends.get(s).size()];
+			for (int i = 0; i < outputs[s].length; i++) outputs[s][i] = ends.get(s).get(i);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return query;
+	}
+
+	/** Node of the expression tree. */
+	private static abstract class Node {
+		/** Evaluates the node given the terms that were found in the text. */
+		abstract boolean evaluate(boolean[] found);
+	}
+
+	/** A term of the query. */
+	private static class Term extends Node {
+		private int idx;
+
+		Term(int idx) {
+			this.idx = idx;
+		}
+
+		@Override
+		boolean evaluate(boolean[] found) {
+			return found[idx];
+		}
+	}
+
+	/** Conjunction or disjunction of other nodes. */
+	private static class Operation extends Node {
+		private boolean and;
+		private List<Node> operands;
+
+		Operation(boolean and, List<Node> operands) {
+			this.and = and;
+			this.operands = operands;
+		}
+
+		@Override
+		boolean evaluate(boolean[] found) {
+			for (Node operand : operands) if (operand.evaluate(found) != and) return !and;
+			return and;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package sysmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Similarity engine that finds near-duplicate titles (differences in punctuation, accents, typos, etc.) using MinHash
+ * signatures of the character n-grams of the normalized titles and locality-sensitive hashing (LSH) banding. Only
+ * publications that share at least one band bucket are compared, so the number of comparisons grows roughly linearly
+ * with the number of publications instead of quadratically.
+ *
+ * Candidate pairs are confirmed by computing the exact Jaccard similarity of the n-gram sets, which has to be at least
+ * the configured threshold, and checking that the difference between the years is within the configured tolerance.
+ *
+ * See http://en.wikipedia.org/wiki/MinHash and http://en.wikipedia.org/wiki/Locality-sensitive_hashing.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class MinHashSimilarityEngine implements SimilarityEngine {
+	/** Size of the character n-grams (shingles) extracted from the titles. */
+	private static final int SHINGLE_SIZE = 3;
+
+	/** Default number of LSH bands. */
+	private static final int DEFAULT_BANDS = 20;
+
+	/** Default number of rows (MinHash values) per LSH band. */
+	private static final int DEFAULT_ROWS = 5;
+
+	/** Mersenne prime used by the universal hash functions. */
+	private static final long PRIME = 2147483647L;
+
+	/** Seed for the hash functions, so results are the same every time the script runs. */
+	private static final long SEED = 20160222L;
+
+	/** Minimum Jaccard similarity of the n-gram sets for two titles to be considered duplicates. */
+	private double threshold;
+
+	/** Maximum difference between the years of two publications for them to be considered duplicates. */
+	private int yearTolerance;
+
+	/** Number of LSH bands. */
+	private int bands;
+
+	/** Number of rows per LSH band. */
+	private int rows;
+
+	/** Coefficients of the hash functions h(x) = (a * x + b) mod PRIME. */
+	private long[] hashA, hashB;
+
+	/** Constructor. */
+	public MinHashSimilarityEngine(double threshold, int yearTolerance) {
+		this(threshold, yearTolerance, DEFAULT_BANDS, DEFAULT_ROWS);
+	}
+
+	/** Constructor. */
+	public MinHashSimilarityEngine(double threshold, int yearTolerance, int bands, int rows) {
+		this.threshold = threshold;
+		this.yearTolerance = yearTolerance;
+		this.bands = bands;
+		this.rows = rows;
+
+		// Generates the coefficients of the hash functions, one per MinHash value.
+		Random random = new Random(SEED);
+		hashA = new long[bands * rows];
+		hashB = new long[bands * rows];
+		for (int i = 0; i < hashA.length; i++) {
+			hashA[i] = 1 + (long) (random.nextDouble() * (PRIME - 1));
+			hashB[i] = (long) (random.nextDouble() * PRIME);
+		}
+	}
+
+	/** @see sysmap.SimilarityEngine#findDuplicates(java.util.List) */
+	@Override
+	public List<int[]> findDuplicates(List<Publication> publications) {
+		List<String> normalizedTitles = new ArrayList<>(publications.size());
+		int[] years = new int[publications.size()];
+		for (int i = 0; i < years.length; i++) {
+			normalizedTitles.add(publications.get(i).getNormalizedTitle());
+			years[i] = publications.get(i).getYear();
+		}
+		return findDuplicates(normalizedTitles, years);
+	}
+
+	/**
+	 * Finds the pairs of near-duplicates among titles that have already been normalized (see util.TitleNormalizer), given
+	 * with their years, in the same order. Used for things other than publications of a mapping (e.g., BibTeX entries).
+	 */
+	public List<int[]> findDuplicates(List<String> normalizedTitles, int[] years) {
+		List<int[]> pairs = new ArrayList<>();
+		int size = normalizedTitles.size();
+
+		// Titles that are exactly the same don't need MinHash, only the first one is indexed.
+		Map<String, Integer> exactIndex = new HashMap<>();
+		List<Integer> indexed = new ArrayList<>();
+		int[][] shingles = new int[size][];
+		for (int i = 0; i < size; i++) {
+			String normalized = normalizedTitles.get(i);
+			Integer first = exactIndex.get(normalized);
+			if (first == null) exactIndex.put(normalized, i);
+			else if (yearsMatch(years[first], years[i])) {
+				pairs.add(new int[] { first, i });
+				continue;
+			}
+			shingles[i] = shingle(normalized);
+			indexed.add(i);
+		}
+
+		// Computes the MinHash signatures of the indexed titles.
+		int[][] signatures = new int[size][];
+		for (int i : indexed) signatures[i] = signature(shingles[i]);
+
+		// Places the titles in buckets, one band at a time, and collects the candidate pairs.
+		Set<Long> candidates = new HashSet<>();
+		for (int band = 0; band < bands; band++) {
+			Map<Long, List<Integer>> buckets = new HashMap<>();
+			for (int i : indexed) {
+				Long bucketKey = bandHash(signatures[i], band);
+				List<Integer> bucket = buckets.get(bucketKey);
+				if (bucket == null) buckets.put(bucketKey, bucket = new ArrayList<>(2));
+				bucket.add(i);
+			}
+
+			for (List<Integer> bucket : buckets.values())
+				for (int a = 0; a < bucket.size(); a++)
+					for (int b = a + 1; b < bucket.size(); b++)
+						candidates.add(((long) bucket.get(a) << 32) | bucket.get(b));
+		}
+
+		// Confirms the candidates with the exact Jaccard similarity and the year tolerance.
+		for (long candidate : candidates) {
+			int i = (int) (candidate >>> 32), j = (int) candidate;
+			if (yearsMatch(years[i], years[j]) && jaccard(shingles[i], shingles[j]) >= threshold) pairs.add(new int[] { i, j });
+		}
+
+		return pairs;
+	}
+
+	/** @see sysmap.SimilarityEngine#getName() */
+	@Override
+	public String getName() {
+		return String.format("MinHash/LSH (threshold %.2f, year tolerance %d)", threshold, yearTolerance);
+	}
+
+	/**
+	 * Computes the LSH bucket keys of a normalized title, one per band. Used by TitleIndex to find candidates for a single
+	 * publication without comparing it to all the others.
+	 */
+	public long[] getBandKeys(String normalized) {
+		int[] signature = signature(shingle(normalized));
+		long[] keys = new long[bands];
+		for (int band = 0; band < bands; band++) keys[band] = bandHash(signature, band);
+		return keys;
+	}
+
+	/** Checks if two publications are similar, i.e., years within the tolerance and n-gram similarity above threshold. */
+	public boolean isSimilar(Publication p1, Publication p2) {
+		return yearsMatch(p1.getYear(), p2.getYear()) && jaccard(shingle(p1.getNormalizedTitle()), shingle(p2.getNormalizedTitle())) >= threshold;
+	}
+
+	/** Checks if two years are within the configured tolerance. */
+	private boolean yearsMatch(int year1, int year2) {
+		return Math.abs(year1 - year2) <= yearTolerance;
+	}
+
+	/** Produces the sorted set of hashed character n-grams of a normalized title. */
+	private static int[] shingle(String normalized) {
+		// Pads the title so first and last characters also belong to SHINGLE_SIZE n-grams.
+		String padded = ' ' + normalized + ' ';
+		int len = padded.length();
+		if (len < SHINGLE_SIZE) return new int[] { padded.hashCode() };
+
+		// Hashes each n-gram without creating substrings.
+		int[] hashes = new int[len - SHINGLE_SIZE + 1];
+		for (int i = 0; i < hashes.length; i++) {
+			int h = 0;
+			for (int j = 0; j < SHINGLE_SIZE; j++) h = 31 * h + padded.charAt(i + j);
+			hashes[i] = h;
+		}
+
+		// Sorts and removes repeated n-grams.
+		Arrays.sort(hashes);
+		int count = 0;
+		for (int i = 0; i < hashes.length; i++) if (i == 0 || hashes[i] != hashes[i - 1]) hashes[count++] = hashes[i];
+		return Arrays.copyOf(hashes, count);
+	}
+
+	/** Computes the MinHash signature of a set of n-grams. */
+	private int[] signature(int[] shingles) {
+		int[] signature = new int[hashA.length];
+		for (int k = 0; k < hashA.length; k++) {
+			long min = Long.MAX_VALUE;
+			for (int shingle : shingles) {
+				long h = (hashA[k] * ((shingle & 0xffffffffL) % PRIME) + hashB[k]) % PRIME;
+				if (h < min) min = h;
+			}
+			signature[k] = (int) min;
+		}
+		return signature;
+	}
+
+	/** Combines the rows of a band of the signature in a single bucket key. The band number is part of the key. */
+	private long bandHash(int[] signature, int band) {
+		long h = band;
+		for (int r = band * rows; r < (band + 1) * rows; r++) h = h * 1000003L + signature[r];
+		return h;
+	}
+
+	/** Computes the Jaccard similarity of two sorted sets of n-grams. */
+	private static double jaccard(int[] a, int[] b) {
+		int i = 0, j = 0, intersection = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] == b[j]) {
+				intersection++;
+				i++;
+				j++;
+			}
+			else if (a[i] < b[j]) i++;
+			else j++;
+		}
+		return (double) intersection / (a.length + b.length - intersection);
+	}
+}
@@ -1,10 +1,27 @@
 package sysmap;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.csv.CSVFormat;
 
@@ -29,26 +46,185 @@ public class ParseExportedData {
 		parsers.put("ScienceDirect.bib", new BibTeXExportedDataParser("ScienceDirect"));
 	}
 	
+	/** Optional binary columnar version of the output file (see ColumnarFileWriter), read by ProcessDuplicates if present. */
+	private static final String BINARY_OUTPUT_FILE = "sysmap-raw.bin";
+
+	/** If true, also writes the binary columnar version of the output file. */
+	private static final boolean WRITE_BINARY_OUTPUT = true;
+
+	/** If true, runs every parser on its own thread, copying their rows to the output file in the order of the sources. */
+	private static final boolean PARALLEL_IMPORT = true;
+
 	public static void main(String[] args) throws Exception {
+		long start = System.nanoTime();
 		File outputFile = new File(OUTPUT_FILE);
-		try (PrintWriter out = new PrintWriter(outputFile)) {
-			out.println("Source;Year;Title;Keywords;Abstract");
-			
+		try (RawOutput out = new RawOutput(outputFile, WRITE_BINARY_OUTPUT ? new File(BINARY_OUTPUT_FILE) : null)) {
 			//File folder = new File(DATA_FOLDER);
 			File folder = new File(".");
+			if (PARALLEL_IMPORT) importInParallel(folder, out);
+			else importSequentially(folder, out);
+		}
+		
+		System.out.printf("Done in %.2fs! Output file: %s%n", (System.nanoTime() - start) / 1e9, outputFile.getName());
+	}
+
+	/** Runs the parsers one after the other, writing their results to the output. */
+	private static void importSequentially(File folder, RawOutput out) throws Exception {
+		for (Map.Entry<String, ExportedDataParser> entry : parsers.entrySet()) {
+			String fileName = entry.getKey();
+			ExportedDataParser parser = entry.getValue();
+			
+			long start = System.nanoTime();
+			File file = new File(folder, fileName);
+			RowHandler handler = new RowHandler(out, null);
+			parser.parseExportedData(file, handler);
+			reportStatistics(parser.getSource(), handler.rows, start);
+		}
+	}
+
+	/**
+	 * Runs each parser on its own worker thread. Each worker spools the rows of its source to a temporary file and the
+	 * current thread copies the spools to the output in the order of the sources, as each one is done. Therefore, the
+	 * import takes about as long as the slowest source and the output is the same as the one of importSequentially().
+	 */
+	private static void importInParallel(File folder, RawOutput out) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(parsers.size());
+		List<File> spoolFiles = new ArrayList<>();
+		List<Future<?>> futures = new ArrayList<>();
+		try {
+			// Submits one worker per parser.
 			for (Map.Entry<String, ExportedDataParser> entry : parsers.entrySet()) {
-				String fileName = entry.getKey();
-				ExportedDataParser parser = entry.getValue();
-				
-				File file = new File(folder, fileName);
-				List<Publication> publications = parser.parseExportedData(file);
-				
-				for (Publication publication : publications) {
-					out.printf("%s;%d;%s;%s;%s%n", parser.getSource(), publication.getYear(), publication.getTitle().replace(";", ",,"), publication.getKeywords().replace(";", ",,"), publication.getAbztract().replace(";", ",,"));
+				final File file = new File(folder, entry.getKey());
+				final ExportedDataParser parser = entry.getValue();
+				final File spoolFile = File.createTempFile("sysmap-spool-", ".tmp");
+				spoolFiles.add(spoolFile);
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						long start = System.nanoTime();
+						try (DataOutputStream spool = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spoolFile)))) {
+							RowHandler handler = new RowHandler(null, spool);
+							parser.parseExportedData(file, handler);
+							spool.writeBoolean(false);
+							reportStatistics(parser.getSource(), handler.rows, start);
+						}
+						return null;
+					}
+				}));
+			}
+
+			// Copies the rows of each source to the output, in order, propagating any exception that happened in the workers.
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
 				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+					throw e;
+				}
+				copySpool(spoolFiles.get(i), out);
+				spoolFiles.get(i).delete();
 			}
 		}
-		
-		System.out.println("Done! Output file: " + outputFile.getName());
+		finally {
+			executor.shutdownNow();
+			for (File spoolFile : spoolFiles) spoolFile.delete();
+		}
+	}
+
+	/** Writes a publication to a spool: its source, year, title, keywords and abstract. */
+	private static void writeSpooled(DataOutputStream spool, Publication publication) throws IOException {
+		spool.writeBoolean(true);
+		writeString(spool, publication.getOnlySource());
+		spool.writeInt(publication.getYear());
+		writeString(spool, publication.getTitle());
+		writeString(spool, publication.getKeywords());
+		writeString(spool, publication.getAbztract());
+	}
+
+	/** Reads the publications of a spool, writing them to the output. */
+	private static void copySpool(File spoolFile, RawOutput out) throws IOException {
+		try (DataInputStream spool = new DataInputStream(new BufferedInputStream(new FileInputStream(spoolFile)))) {
+			while (spool.readBoolean()) {
+				String source = readString(spool);
+				int year = spool.readInt();
+				String title = readString(spool);
+				String keywords = readString(spool);
+				String abztract = readString(spool);
+				out.write(new Publication(title, year, keywords, abztract, source));
+			}
+		}
+	}
+
+	/**
+	 * Writes a string in UTF-8, prefixed by its length in bytes (writeUTF() is limited to 64 KB, abstracts may be
+	 * larger). Null strings are written as empty ones.
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = (value == null) ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/** Reads a string written by writeString(). */
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** Prints how many rows a source produced and how fast. */
+	private static void reportStatistics(String source, int rows, long start) {
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%s: %d rows in %.2fs (%.0f rows/s)%n", source, rows, elapsed, (elapsed > 0) ? rows / elapsed : 0);
+	}
+
+	/** Handler that writes publications to the output as they are parsed or to the spool of their source. */
+	private static class RowHandler implements PublicationHandler {
+		private RawOutput out;
+		private DataOutputStream spool;
+		private int rows;
+
+		RowHandler(RawOutput out, DataOutputStream spool) {
+			this.out = out;
+			this.spool = spool;
+		}
+
+		@Override
+		public void handle(Publication publication) throws Exception {
+			if (spool != null) writeSpooled(spool, publication);
+			else out.write(publication);
+			rows++;
+		}
+	}
+
+	/** The output of the script: the CSV file and, optionally, its binary columnar version. */
+	private static class RawOutput implements Closeable {
+		private PrintWriter csvOut;
+		private ColumnarFileWriter binaryOut;
+		private StringBuilder builder = new StringBuilder();
+
+		RawOutput(File csvFile, File binaryFile) throws IOException {
+			csvOut = new PrintWriter(new BufferedWriter(new FileWriter(csvFile)));
+			csvOut.println("Source;Year;Title;Keywords;Abstract");
+			if (binaryFile != null) binaryOut = new ColumnarFileWriter(binaryFile);
+		}
+
+		/** Writes the publication as a CSV line, replacing the separator inside the cells, and in the binary file. */
+		void write(Publication publication) throws IOException {
+			builder.setLength(0);
+			builder.append(publication.getOnlySource()).append(';').append(publication.getYear()).append(';');
+			builder.append(publication.getTitle().replace(";", ",,")).append(';');
+			builder.append(publication.getKeywords().replace(";", ",,")).append(';');
+			builder.append(publication.getAbztract().replace(";", ",,"));
+			csvOut.println(builder);
+			if (binaryOut != null) binaryOut.write(publication);
+		}
+
+		@Override
+		public void close() throws IOException {
+			csvOut.close();
+			if (binaryOut != null) binaryOut.close();
+		}
 	}
 }
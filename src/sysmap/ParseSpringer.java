@@ -4,14 +4,29 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import web.HttpCache;
+
 /**
- * TODO: document this type.
+ * Retrieves the results of a search in Springer Link, visiting the page of each publication to extract its year,
+ * keywords and abstract, and writes them in the CSV format produced by ParseExportedData (sysmap-raw-springer.csv).
+ *
+ * Pages are fetched by a Crawler: papers are fetched in parallel (at most MAX_CONCURRENCY at a time, with a politeness
+ * delay of HOST_DELAY between requests) while the next page of results is being fetched, and failed requests are
+ * retried. Papers already parsed are saved in a progress file (sysmap-raw-springer.csv.progress), so if the script is
+ * interrupted it can be run again without fetching them again. Delete the progress file to start from scratch.
+ *
+ * Pages are also kept in the shared HTTP cache (see HttpCache), so running the script again after changing it parses
+ * the pages from disk, only contacting the server for pages that have expired.
+ * 
+ * The start URL and the output file can be given as arguments, e.g. to run the script against a local copy of the
+ * pages.
  *
  * @author Pedro Negri
  * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
@@ -20,17 +35,85 @@ import org.jsoup.select.Elements;
 public class ParseSpringer {
 	private static final String SOURCE_NAME = "Springer";
 	
-	private static final String SPRINGER_BASE = "http://link.springer.com";
-	
-	private static final String START_URL = SPRINGER_BASE + "/search?query=%22requirements+at+runtime%22";
+	private static final String START_URL = "http://link.springer.com/search?query=%22requirements+at+runtime%22";
 	
 	private static final String OUTPUT_FILE = "sysmap-raw-springer.csv";
 	
+	/** Extension of the progress file, which is named after the output file. */
+	private static final String PROGRESS_EXTENSION = ".progress";
+	
+	/** Maximum number of pages fetched at the same time. */
+	private static final int MAX_CONCURRENCY = 4;
+	
+	/** Minimum time between two requests to the same host (in milliseconds). */
+	private static final long HOST_DELAY = 500;
+	
+	/** Maximum number of times a failed request is retried. */
+	private static final int MAX_RETRIES = 4;
+	
+	/** Time to wait before retrying a failed request for the first time (in milliseconds). */
+	private static final long INITIAL_BACKOFF = 2000;
+	
+	/** Timeout of each request (in milliseconds). */
+	private static final int TIMEOUT = 60000;
+	
+	/**
+	 * Creates a parser for the page of a paper, whose title was obtained from the list of results. The parser also
+	 * converts the publication to and from a line of the progress file.
+	 */
+	private static Crawler.PageParser<Publication> createPaperParser(final String pubName) {
+		return new Crawler.PageParser<Publication>() {
+			@Override
+			public Publication parse(String url, Document pubDoc) {
+				// Extracts year.
+				int year = 0;
+				Elements yearElems = pubDoc.select("#abstract-about-book-chapter-copyright-year");
+				if (yearElems.isEmpty()) yearElems = pubDoc.select("span.ArticleCitation_Year > time");
+				if (! yearElems.isEmpty()) year = parseYear(yearElems.first().text(), url);
+				else System.out.printf("%s: paper %s has no year! Using 0 as year.%n", SOURCE_NAME, url);
+			
+				// Extracts abstract and keywords
+				Element abstractElem = pubDoc.select("section.Abstract > p.Para").first();
+				String abztract = (abstractElem == null) ? "" : abstractElem.text();
+				Elements keyElems = pubDoc.select("ul.abstract-keywords > li");
+				StringBuilder keywords = new StringBuilder();
+				for (Element keyElem : keyElems) keywords.append(keyElem.text()).append(", ");
+			
+				return new Publication(pubName, year, keywords.toString(), abztract, SOURCE_NAME);
+			}
+
+			@Override
+			public String encode(Publication pub) {
+				return pub.getYear() + "\t" + clean(pub.getTitle()) + '\t' + clean(pub.getKeywords()) + '\t' + clean(pub.getAbztract());
+			}
+
+			@Override
+			public Publication decode(String data) {
+				String[] fields = data.split("\t", -1);
+				return new Publication(fields[1], Integer.parseInt(fields[0]), fields[2], fields[3], SOURCE_NAME);
+			}
+		
+			/** Replaces tabs, which separate the fields in the progress file. */
+			private String clean(String text) {
+				return text.replace('\t', ' ');
+			}
+		};
+	}
+	
 	public static void main(String[] args) throws Exception {
+		String startUrl = (args.length > 0) ? args[0] : START_URL;
+		File outputFile = new File((args.length > 1) ? args[1] : OUTPUT_FILE);
+		File progressFile = new File(outputFile.getPath() + PROGRESS_EXTENSION);
+		
 		// Retrieves all publications returned from this search.
-		List<Publication> publications = retrieveAllPublications();
+		List<Publication> publications;
+		try (HttpCache cache = new HttpCache(); Crawler crawler = new Crawler(MAX_CONCURRENCY, HOST_DELAY, MAX_RETRIES, INITIAL_BACKOFF, TIMEOUT, progressFile)) {
+			crawler.setCache(cache);
+			if (crawler.getProgressCount() > 0) System.out.printf("Resuming: %d papers already parsed in %s.%n", crawler.getProgressCount(), progressFile.getName());
+			publications = retrieveAllPublications(crawler, startUrl);
+			System.out.printf("HTTP cache: %s.%n", cache.getStatistics());
+		}
 		
-		File outputFile = new File(OUTPUT_FILE);
 		try (PrintWriter out = new PrintWriter(outputFile)) {
 			out.println("Source;Year;Title;Keywords;Abstract");
 			
@@ -42,49 +125,32 @@ public class ParseSpringer {
 		System.out.println("Done! Output file: " + outputFile.getName());
 	}
 	
-	private static List<Publication> retrieveAllPublications() throws Exception {
+	private static List<Publication> retrieveAllPublications(Crawler crawler, String startUrl) throws Exception {
 		// Extracts the base address of the URL.
-		String baseUrl = START_URL.substring(0, START_URL.indexOf('/', 7));
+		String baseUrl = startUrl.substring(0, startUrl.indexOf('/', startUrl.indexOf("//") + 2));
 
-		// Stores the relevant publications in a list.
-		List<Publication> publications = new ArrayList<>();
+		// Papers are fetched in the background, their results are collected in order at the end.
+		List<Future<Publication>> futures = new ArrayList<>();
+		List<String> pubUrls = new ArrayList<>();
 		int count = 0, pageCount = 0;
 		
 		// Processes all pages, following "next" links.
-		String url = START_URL;
+		String url = startUrl;
 		while (url != null) {
 			// Opens the page and extracts the HTML DOM structure into Jsoup. Assumes this is the last page.
 			System.out.printf("Fetching page %02d (%s)%n", ++pageCount, url);
-			Document doc = Jsoup.connect(url).timeout(10000*10000).get();
+			Document doc = crawler.fetch(url);
 			url = null;
 
-			// Finds the elements that represent the results and iterate through them.
+			// Finds the elements that represent the results and submits their pages to the crawler.
 			Elements results = doc.select("#results-list").first().select("li");
 			for (Element result : results) {
 				// Extracts publication name and URL.
 				Element link = result.select("h2").first().select("a").first();
-				String pubName = link.text();
-				String pubUrl = SPRINGER_BASE + link.attr("href");
-				
-				// Opens the publication's page and extracts the HTML DOM structure into Jsoup.
-				System.out.printf("\tFetching paper %02d: %s (%s)%n", ++count, pubName, pubUrl);
-				Document pubDoc = Jsoup.connect(pubUrl).timeout(10000*10000).get();
-				
-				// Extracts year.
-				int year = 0;
-				Elements yearElems = pubDoc.select("#abstract-about-book-chapter-copyright-year");
-				if (yearElems.isEmpty()) yearElems = pubDoc.select("span.ArticleCitation_Year > time");
-				if (! yearElems.isEmpty()) year = parseYear(yearElems.first().text(), count);
-				else System.out.printf("%s: line %d has no year! Using 0 as year.%n", SOURCE_NAME, count);
-				
-				// Extracts abstract and keywords
-				String abztract = pubDoc.select("section.Abstract > p.Para").first().text();
-				Elements keyElems = pubDoc.select("ul.abstract-keywords > li");
-				StringBuilder keywords = new StringBuilder();
-				for (Element keyElem : keyElems) keywords.append(keyElem.text()).append(", ");
-				
-				// Adds the publication.
-				publications.add(new Publication(pubName, year, keywords.toString(), abztract, SOURCE_NAME));
+				String pubUrl = baseUrl + link.attr("href");
+				System.out.printf("\tQueueing paper %02d: %s (%s)%n", ++count, link.text(), pubUrl);
+				futures.add(crawler.submit(pubUrl, createPaperParser(link.text())));
+				pubUrls.add(pubUrl);
 			}
 			
 			// Checks if there's another page and sets its URL to open it in the next iteration.
@@ -95,16 +161,28 @@ public class ParseSpringer {
 			System.out.println();
 		}
 		
+		// Collects the publications. Papers that could not be fetched are skipped (and fetched again in the next run).
+		List<Publication> publications = new ArrayList<>();
+		int failures = 0;
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				publications.add(futures.get(i).get());
+			}
+			catch (ExecutionException e) {
+				failures++;
+				System.out.printf("Could not retrieve paper %s: %s%n", pubUrls.get(i), e.getCause());
+			}
+		}
+		System.out.printf("Retrieved %d papers from %d pages (%d failed).%n", publications.size(), pageCount, failures);
+		
 		return publications;
 	}
 
-	private static int parseYear(String yearData, long recordNumber) {
-		if (yearData.matches("\\d{4}")) return Integer.parseInt(yearData);
-				
-		String[] data = yearData.split(" ");
-		for (int i = 0; i < data.length; i++) if (data[i].matches("\\d{4}")) return Integer.parseInt(data[i]);
+	private static int parseYear(String yearData, String url) {
+		int year = YearExtractor.extract(yearData);
+		if (year != YearExtractor.NO_YEAR) return year;
 		
-		System.out.printf("%s: line %d has publication with unrecognizable year: %s! Using 0 as year.%n", SOURCE_NAME, recordNumber, yearData);
+		System.out.printf("%s: paper %s has publication with unrecognizable year: %s! Using 0 as year.%n", SOURCE_NAME, url, yearData);
 		return 0;
 	}
 }
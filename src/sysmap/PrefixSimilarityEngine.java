@@ -0,0 +1,41 @@
+package sysmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Similarity engine that considers duplicates publications whose normalized titles are prefixes of each other.
+ * Expects the publications to be sorted by their normalized title, so only neighbours have to be compared.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class PrefixSimilarityEngine implements SimilarityEngine {
+	/** Maximum difference between the years of two publications for them to be considered duplicates. */
+	private int yearTolerance;
+
+	/** Constructor. */
+	public PrefixSimilarityEngine(int yearTolerance) {
+		this.yearTolerance = yearTolerance;
+	}
+
+	/** @see sysmap.SimilarityEngine#findDuplicates(java.util.List) */
+	@Override
+	public List<int[]> findDuplicates(List<Publication> publications) {
+		List<int[]> pairs = new ArrayList<>();
+		String previous = "\u0000";
+		for (int i = 0; i < publications.size(); i++) {
+			Publication pub = publications.get(i);
+			String key = pub.getNormalizedTitle();
+			if ((i > 0) && (previous.startsWith(key) || key.startsWith(previous)) && (Math.abs(publications.get(i - 1).getYear() - pub.getYear()) <= yearTolerance)) pairs.add(new int[] { i - 1, i });
+			previous = key;
+		}
+		return pairs;
+	}
+
+	/** @see sysmap.SimilarityEngine#getName() */
+	@Override
+	public String getName() {
+		return "title prefix";
+	}
+}
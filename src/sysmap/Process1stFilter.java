@@ -1,8 +1,16 @@
 package sysmap;
 
-import java.io.File;
-import java.io.PrintWriter;
-import java.util.Scanner;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
 
 /**
  * Reads a CSV file with the result of the 1st filter of a systematic mapping search, selecting those who have been
@@ -11,7 +19,13 @@ import java.util.Scanner;
  * To use this script, you should provide a file called sysmap-1stfilter.csv with the results of the 1st filter of the
  * mapping. The script expects this file to have a title row as first column and to have the following columns, in this
  * order: ID; year; source; title; analysis. Moreover, the analysis column should start with OK for publications that
- * will pass the filter and anything else for publications that will be cut out.
+ * will pass the filter and anything else for publications that will be cut out. Cells can be quoted, so the separator
+ * can be used inside them.
+ * 
+ * Besides the analysis, publications can also be selected by a range of years, by their sources and by a regular
+ * expression on their titles (see the constants below). A publication passes the filter if it satisfies all of the
+ * criteria that are set; the number of publications that satisfy each criterion is reported at the end. The file is
+ * processed in a single pass, one row at a time, so it can be of any size.
  * 
  * I created this script to automate some steps of a systematic literature mapping / systematic literature review
  * processes. See http://en.wikipedia.org/wiki/Systematic_review.
@@ -26,40 +40,63 @@ public class Process1stFilter {
 	/** Resulting file with duplicates grouped by title. */
 	private static final String CSV_RESULT_FILENAME = "sysmap-1stfilter-result.csv";
 
+	/** Format of the CSV files: semicolon-separated values, possibly quoted. */
+	private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT.withDelimiter(';');
+
+	/** Indexes of the columns of the source file. */
+	private static final int YEAR_COLUMN = 1, SOURCES_COLUMN = 2, TITLE_COLUMN = 3, ANALYSIS_COLUMN = 4;
+
+	/** Beginning of the analysis of publications that pass the filter. */
+	private static final String ANALYSIS_STATUS = "OK";
+
+	/** Range of years of publications that pass the filter (use 0 and Integer.MAX_VALUE for any year). */
+	private static final int MIN_YEAR = 0, MAX_YEAR = Integer.MAX_VALUE;
+
+	/** Sources of publications that pass the filter, at least one of them (leave empty for any source). */
+	private static final String[] SOURCES = {};
+
+	/** Regular expression that titles of publications that pass the filter should contain (use null for any title). */
+	private static final String TITLE_REGEX = null;
+
 	/** The program. */
 	public static void main(String[] args) throws Exception {
+		// Builds the criteria of the filter.
+		List<RowPredicate> predicates = new ArrayList<>();
+		predicates.add(RowPredicates.status(ANALYSIS_COLUMN, ANALYSIS_STATUS));
+		if (MIN_YEAR > 0 || MAX_YEAR < Integer.MAX_VALUE) predicates.add(RowPredicates.yearRange(YEAR_COLUMN, MIN_YEAR, MAX_YEAR));
+		if (SOURCES.length > 0) predicates.add(RowPredicates.anySource(SOURCES_COLUMN, SOURCES));
+		if (TITLE_REGEX != null) predicates.add(RowPredicates.matches(TITLE_COLUMN, TITLE_REGEX));
+		int[] hits = new int[predicates.size()];
 		int countAll = 0, countFiltered = 0;
 
-		// Reads the source (1st filter) file. Drops the title row.
-		try (Scanner scanner = new Scanner(new File(CSV_SOURCE_FILENAME)); PrintWriter csvOut = new PrintWriter(new File(CSV_RESULT_FILENAME))) {
-			String line = scanner.nextLine();
-			csvOut.println(line);
-			while (scanner.hasNextLine()) {
+		// Reads the source (1st filter) file, copying the title row and the rows that satisfy all the criteria. All criteria
+		// are checked for every row so they can be reported separately. Rows are written with the platform's line separator
+		// instead of the CRLF of CSVFormat.DEFAULT, like the lines read from the source file were before.
+		try (Reader reader = new FileReader(CSV_SOURCE_FILENAME); CSVParser parser = new CSVParser(reader, CSV_FORMAT); CSVPrinter csvOut = new CSVPrinter(new BufferedWriter(new FileWriter(CSV_RESULT_FILENAME)), CSV_FORMAT.withRecordSeparator(System.lineSeparator()))) {
+			for (CSVRecord record : parser) {
+				if (record.getRecordNumber() == 1) {
+					csvOut.printRecord(record);
+					continue;
+				}
 				countAll++;
 
-				// Reads each line and breaks the information in CSV format.
-				line = scanner.nextLine().trim();
-				String[] data = line.split(";");
-				
-				// Checks if the column separator has been used inside a cell.
-				if (data.length != 5) {
-					System.out.println("\nFATAL: separator used inside a cell. Even if quoted, this script doesn't support this. Please \"fix\" the source file:");
-					System.out.printf("%d: %s%n%n", countAll, line);
-					System.exit(1);
+				boolean passed = true;
+				for (int i = 0; i < hits.length; i++) {
+					if (predicates.get(i).test(record)) hits[i]++;
+					else passed = false;
 				}
-				
-				// Extracts the information from the analysis column.
-				String analysis = data[4].trim();
 
-				// Outputs the line if it passed the filter.
-				if (analysis.toUpperCase().startsWith("OK")) {
+				// Outputs the row if it passed the filter.
+				if (passed) {
 					countFiltered++;
-					csvOut.println(line);
+					csvOut.printRecord(record);
 				}
 			}
 		}
 
 		// Reports statistics.
-		System.out.printf("Read %d lines in file %s, resulting in %d filtered publications in file %s.%n%n", countAll, CSV_SOURCE_FILENAME, countFiltered, CSV_RESULT_FILENAME);
+		System.out.printf("Read %d lines in file %s, resulting in %d filtered publications in file %s.%n", countAll, CSV_SOURCE_FILENAME, countFiltered, CSV_RESULT_FILENAME);
+		for (int i = 0; i < hits.length; i++) System.out.printf("\t%d publications satisfy: %s%n", hits[i], predicates.get(i).getDescription());
+		System.out.println();
 	}
 }
@@ -1,12 +1,19 @@
 package sysmap;
 
 import java.io.File;
-import java.io.PrintWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
 
 /**
  * Reads a CSV file with the raw result of a systematic mapping search, detects duplicate entries (from multiple
@@ -15,7 +22,28 @@ import java.util.TreeSet;
  * 
  * To use this script, you should provide a file called sysmap-raw.csv with the raw reults of your search in different
  * sources of publications. The script expects this file to have a title row as first column and to have the following
- * columns, in this order: source; year; title.
+ * columns, in this order: source; year; title. Other columns (e.g., keywords and abstract, as produced by
+ * ParseExportedData) are ignored and cells can be quoted if they contain the separator. The file is read as a stream
+ * and sorted on disk (see RawDataSorter), so the raw records don't have to fit in memory. Note, however, that the
+ * publications that result from collapsing records with the same title are kept in memory, together with the data the
+ * similarity engines need (e.g., the MinHash signatures of their titles), so memory still grows with the number of
+ * distinct titles. If the binary columnar version of the raw file produced by ParseExportedData (sysmap-raw.bin)
+ * exists and is up to date, it's used instead.
+ * 
+ * Besides publications with the same (normalized) title, the script also merges similar publications found by the engines listed in
+ * similarityEngines: titles that are prefixes of one another and near-duplicates (punctuation, accents, typos) found by
+ * MinHashSimilarityEngine. Adjust SIMILARITY_THRESHOLD and YEAR_TOLERANCE to make the matching stricter or looser.
+ * Similar publications are not merged if they already share a source, as a source doesn't list the same publication
+ * twice: these are different publications with close titles (e.g., two papers of the same authors).
+ * 
+ * The results are also saved in an index (sysmap-noduplicates.idx, see TitleIndex). When the index exists, only the
+ * lines added to each source since the last run are merged with the previous results, keeping the IDs of the
+ * publications stable. The index has a fingerprint of the lines already processed (see RawDataFingerprint): if they are
+ * no longer the first lines of their sources in the raw file (e.g., lines were removed or changed), all the raw data is
+ * processed again. Delete the index to process all the raw data again after changing the matching parameters.
+ * 
+ * The HTML result is split in pages of HTML_PAGE_SIZE publications (sysmap-noduplicates.html, then
+ * sysmap-noduplicates-2.html, etc.), so browsers can open it quickly even for big searches.
  * 
  * Moreover, if you want the HTML results to provide links to direct searches of the publication's title, you should
  * have the file sysmap-sourcesearch.properties filled in with the URL of the searches, using {0} as placeholder for the
@@ -39,96 +67,301 @@ public class ProcessDuplicates {
 	/** Resulting file in HTML to make it easier to check for the paper data. */
 	private static final String HTML_RESULT_FILENAME = "sysmap-noduplicates.html";
 
-	/** Map that indexes publications by title. */
-	private static final Map<String, Publication> pubMap = new TreeMap<>();
+	/** Binary columnar version of the source file (see ParseExportedData), used instead of the CSV file if up to date. */
+	private static final String RAW_BINARY_FILENAME = "sysmap-raw.bin";
+
+	/** Maximum number of publications in each page of the HTML result (see ReportWriter). */
+	private static final int HTML_PAGE_SIZE = 5000;
+
+	/** Format of the source file: semicolon-separated values, possibly quoted. */
+	private static final CSVFormat RAW_FORMAT = CSVFormat.DEFAULT.withDelimiter(';');
+
+	/** Maximum number of raw records kept in memory before a sorted run is written to disk (see RawDataSorter). */
+	private static final int MAX_RECORDS_IN_MEMORY = 100000;
+
+	/**
+	 * Minimum similarity for near-duplicate titles to be merged (see MinHashSimilarityEngine). Lower values catch more
+	 * variations of the same title but also merge different publications with close titles (e.g., "Adaptive Goals for
+	 * Self-Adaptive Service Compositions" and "Live goals for adaptive service compositions" have a similarity of 0.83).
+	 * Merges between publications of the same source are refused, which avoids most of these false positives.
+	 */
+	private static final double SIMILARITY_THRESHOLD = 0.8;
 
-	/** Keys to be removed from the publications map after the merging process. */
-	private static final Set<String> mergedKeys = new TreeSet<>();
+	/** Maximum difference between the years of two publications for them to be merged. */
+	private static final int YEAR_TOLERANCE = 0;
+
+	/** Resulting index of the publications, used to merge new raw data without processing all of it again. */
+	private static final String INDEX_FILENAME = "sysmap-noduplicates.idx";
+
+	/** Whether to keep an index of the results and, when it exists, process only the raw data appended since. */
+	private static final boolean INCREMENTAL = true;
+
+	/** Engine that finds near-duplicate titles, also used by the index. */
+	private static final MinHashSimilarityEngine minHashEngine = new MinHashSimilarityEngine(SIMILARITY_THRESHOLD, YEAR_TOLERANCE);
+
+	/** Engines used, in order, to find similar publications that should be merged. */
+	private static final List<SimilarityEngine> similarityEngines = Arrays.<SimilarityEngine> asList(new PrefixSimilarityEngine(YEAR_TOLERANCE), minHashEngine);
 
 	/** The program. */
 	public static void main(String[] args) throws Exception {
-		int count = 0;
+		// Uses the binary columnar version of the source file if it's up to date, as it doesn't require parsing the
+		// keywords and abstracts.
+		File rawFile = new File(RAW_FILENAME), rawBinaryFile = new File(RAW_BINARY_FILENAME);
+		boolean binary = rawBinaryFile.exists() && (!rawFile.exists() || rawBinaryFile.lastModified() >= rawFile.lastModified());
+		String inputName = binary ? RAW_BINARY_FILENAME : RAW_FILENAME;
 
-		// Reads the source (raw) file. Drops the title row.
-		try (Scanner scanner = new Scanner(new File(RAW_FILENAME))) {
-			scanner.nextLine();
-			while (scanner.hasNextLine()) {
-				count++;
+		// Merges only the new raw data with the results of the previous run, if there is an index that is still valid, or
+		// processes all of it.
+		File indexFile = new File(INDEX_FILENAME);
+		TitleIndex index = (INCREMENTAL && indexFile.exists()) ? updateIndex(indexFile, rawFile, rawBinaryFile, binary, inputName) : null;
+		if (index == null) index = buildIndex(rawFile, rawBinaryFile, binary, inputName);
+		if (INCREMENTAL) index.save(indexFile);
+
+		// Produces the result in CSV and HTML formats to be used in the next phase of the systematic mapping, in order of
+		// the IDs of the publications.
+		int count = 0, pageCount;
+		try (ReportWriter out = new ReportWriter(new File(CSV_RESULT_FILENAME), new File(HTML_RESULT_FILENAME), HTML_PAGE_SIZE)) {
+			for (Publication pub : index.getPublications()) out.write(++count, pub);
+			pageCount = out.getPageCount();
+		}
 
-				// Reads each line and breaks the information in CSV format.
-				String line = scanner.nextLine().trim();
-				String[] data = line.split(";");
-				
-				// Checks if the column separator has been used inside a cell.
-				if (data.length != 3) {
-					System.out.println("\nFATAL: separator used inside a cell. Even if quoted, this script doesn't support this. Please \"fix\" the source file:");
-					System.out.printf("%d: %s%n%n", count, line);
-					System.exit(1);
+		// Reports statistics.
+		System.out.printf("Wrote %d lines to output files %s and %s (%d page(s)). Done!%n%n", count, CSV_RESULT_FILENAME, HTML_RESULT_FILENAME, pageCount);
+	}
+
+	/**
+	 * Processes all the raw data: sorts it on disk, merges the records with the same normalized title and then the
+	 * similar ones, using the similarity engines. Returns an index of the result, with IDs in the order of the titles.
+	 */
+	private static TitleIndex buildIndex(File rawFile, File rawBinaryFile, boolean binary, String inputName) throws Exception {
+		long count = 0;
+		int runCount = 0;
+		List<Publication> publications = new ArrayList<>();
+		final RawDataFingerprint fingerprint = new RawDataFingerprint();
+
+		// Reads the source (raw) data, streaming its records into an external sorter.
+		try (final RawDataSorter sorter = new RawDataSorter(MAX_RECORDS_IN_MEMORY)) {
+			PublicationHandler handler = new PublicationHandler() {
+				@Override
+				public void handle(Publication pub) throws Exception {
+					fingerprint.add(pub.getSourcesString(), pub.getYear(), pub.getTitle());
+					for (String source : pub.getSources()) sorter.add(source, pub.getYear(), pub.getTitle());
+				}
+			};
+			count = binary ? readBinaryRawData(rawBinaryFile, handler) : readCsvRawData(rawFile, handler);
+
+			// Goes through the records sorted by their normalized title, merging the ones with the same key.
+			runCount = sorter.getRunCount();
+			Publication previous = null;
+			String previousKey = null;
+			for (Iterator<Publication> iterator = sorter.sortedIterator(); iterator.hasNext();) {
+				Publication pub = iterator.next();
+				String key = pub.getNormalizedTitle();
+
+				// If the publication is the same as the previous one, add a source to it. Otherwise, add it to the list.
+				if (key.equals(previousKey)) previous.addSources(pub);
+				else {
+					publications.add(pub);
+					previous = pub;
+					previousKey = key;
 				}
-				
-				// Extracts the information from the columns.
-				String source = data[0].trim();
-				int year = Integer.parseInt(data[1].trim());
-				String title = data[2].trim().replace("\"", "");
+			}
+		}
 
-				// Uses the lowercase title as key.
-				String key = title.toLowerCase();
+		// Reports statistics.
+		System.out.printf("Read %d lines in file %s (%d sorted runs on disk), resulting in %d indexed publications.%n%n", count, inputName, runCount, publications.size());
 
-				// If the publication is already indexed, add a source to it.
-				if (pubMap.containsKey(key)) pubMap.get(key).getSources().add(source);
+		// Merges similar results using each of the similarity engines, in order, keeping the titles of the publications
+		// that are merged into others.
+		Map<Publication, List<String>> mergedTitles = new IdentityHashMap<>();
+		for (SimilarityEngine engine : similarityEngines) {
+			int before = publications.size();
+			publications = mergeDuplicates(publications, engine.findDuplicates(publications), mergedTitles);
 
-				// Otherwise, add the publication to the map.
-				else pubMap.put(key, new Publication(title, year, source));
+			// Reports statistics.
+			System.out.printf("%nMerged %d publications using %s, resulting in %d indexed publications.%n%n", before - publications.size(), engine.getName(), publications.size());
+		}
+
+		// Indexes the result, including the titles merged into each publication (as updateIndex() does).
+		TitleIndex index = new TitleIndex(minHashEngine, YEAR_TOLERANCE);
+		for (Publication pub : publications) {
+			int id = index.add(pub);
+			List<String> titles = mergedTitles.get(pub);
+			if (titles != null) for (String title : titles) index.addTitle(id, title);
+		}
+		index.setFingerprint(fingerprint);
+		return index;
+	}
+
+	/**
+	 * Merges the raw records that were added to each source since the index was saved with the publications in the
+	 * index. Records that match an indexed publication are merged into it, keeping its ID, and the others are added with
+	 * new IDs at the end. Returns null if the index can't be used (it can't be read or the records it has processed are
+	 * no longer the first ones of their sources), in which case all the raw data has to be processed again.
+	 */
+	private static TitleIndex updateIndex(File indexFile, File rawFile, File rawBinaryFile, boolean binary, String inputName) throws Exception {
+		final TitleIndex index;
+		try {
+			index = TitleIndex.load(indexFile, minHashEngine, YEAR_TOLERANCE);
+		}
+		catch (IOException e) {
+			System.out.printf("Could not read index %s (%s), processing all the raw data again.%n%n", indexFile.getName(), e.getMessage());
+			return null;
+		}
+
+		final int before = index.getPublications().size();
+		final int[] merged = new int[1];
+		final RawDataFingerprint previous = index.getFingerprint(), fingerprint = new RawDataFingerprint();
+		PublicationHandler handler = new PublicationHandler() {
+			@Override
+			public void handle(Publication pub) throws Exception {
+				// Skips the records already processed, checking that they are the same as in the previous run.
+				String source = pub.getSourcesString();
+				long processed = previous.getCount(source);
+				long number = fingerprint.add(source, pub.getYear(), pub.getTitle());
+				if (number == processed && !fingerprint.matches(source, previous)) throw new StaleIndexException(source + " has changed since the index was saved");
+				if (number <= processed) return;
+
+				int id = index.probe(pub);
+				if (id == 0) index.add(pub);
+				else {
+					Publication existing = index.getPublications().get(id - 1);
+					System.out.printf("Merging similar results:%n\t%d (%s): %s%n\t%d (%s): %s%n", existing.getYear(), existing.getSourcesString(), existing.getTitle(), pub.getYear(), pub.getSourcesString(), pub.getTitle());
+					index.merge(id, pub);
+					merged[0]++;
+				}
 			}
+		};
+		try {
+			if (binary) readBinaryRawData(rawBinaryFile, handler);
+			else readCsvRawData(rawFile, handler);
+			for (String source : previous.getSources())
+				if (fingerprint.getCount(source) < previous.getCount(source)) throw new StaleIndexException(source + " has fewer lines (" + fingerprint.getCount(source) + ") than already processed (" + previous.getCount(source) + ")");
+		}
+		catch (StaleIndexException e) {
+			System.out.printf("Cannot use index %s: in file %s, %s. Processing all the raw data again.%n%n", indexFile.getName(), inputName, e.getMessage());
+			return null;
 		}
+		index.setFingerprint(fingerprint);
 
 		// Reports statistics.
-		System.out.printf("Read %d lines in file %s, resulting in %d indexed publications.%n%n", count, RAW_FILENAME, pubMap.size());
-
-		// Merges similar results (publications whose titles are included in another).
-		count = 0;
-		String previous = "\u0000";
-		for (String key : pubMap.keySet()) {
-			if (previous.startsWith(key) || key.startsWith(previous)) {
-				Publication p1 = pubMap.get(previous);
-				Publication p2 = pubMap.get(key);
-				if (p1.getYear() == p2.getYear()) {
+		long skip = previous.getTotalCount();
+		System.out.printf("Read %d new lines in file %s (%d already processed), merged %d of them with existing publications, resulting in %d indexed publications (%d new).%n%n", fingerprint.getTotalCount() - skip, inputName, skip, merged[0], index.getPublications().size(), index.getPublications().size() - before);
+		return index;
+	}
+
+	/**
+	 * Reads the raw data from the CSV file, passing the records to the handler. Drops the title row. Returns the number
+	 * of records in the file.
+	 */
+	private static long readCsvRawData(File rawFile, PublicationHandler handler) throws Exception {
+		long count = 0;
+		try (Reader reader = new FileReader(rawFile); CSVParser parser = new CSVParser(reader, RAW_FORMAT)) {
+			for (CSVRecord record : parser) {
+				if (record.getRecordNumber() > 1) {
 					count++;
-					System.out.printf("Merging similar results:%n\t%d (%s): %s%n\t%d (%s): %s%n", p1.getYear(), p1.getSourcesString(), p1.getTitle(), p2.getYear(), p2.getSourcesString(), p2.getTitle());
-					p1.mergeWith(p2);
-					mergedKeys.add(key);
+
+					// Checks if the record has the expected columns. Other columns (keywords, abstract) are ignored.
+					if (record.size() < 3) {
+						System.out.printf("Line %d has only %d column(s), skipping it.%n", record.getRecordNumber(), record.size());
+						continue;
+					}
+
+					// Extracts the information from the columns.
+					String source = record.get(0).trim();
+					String title = cleanTitle(record.get(2));
+					int year = 0;
+					try {
+						year = Integer.parseInt(record.get(1).trim());
+					}
+					catch (NumberFormatException e) {
+						System.out.printf("Line %d (%s) has an invalid year: %s! Using 0 as year.%n", record.getRecordNumber(), title, record.get(1));
+					}
+
+					handler.handle(new Publication(title, year, source));
 				}
 			}
-			previous = key;
 		}
+		return count;
+	}
 
-		// Removes merged results from the publications map.
-		for (String key : mergedKeys)
-			pubMap.remove(key);
-
-		// Reports statistics.
-		System.out.printf("%nMerged %d publication pairs, resulting in %d indexed publications.%n%n", count, pubMap.size());
+	/**
+	 * Reads the raw data from the binary columnar file, passing the records to the handler. Skips keywords and abstracts.
+	 * Returns the number of records in the file.
+	 */
+	private static long readBinaryRawData(File rawBinaryFile, PublicationHandler handler) throws Exception {
+		long count = 0;
+		try (ColumnarFileReader reader = new ColumnarFileReader(rawBinaryFile)) {
+			for (Iterator<Publication> iterator = reader.iterator(false); iterator.hasNext();) {
+				Publication pub = iterator.next();
+				count++;
+				pub.setTitle(cleanTitle(pub.getTitle()));
+				handler.handle(pub);
+			}
+		}
+		return count;
+	}
 
-		// Produces the result in CSV and HTML formats to be used in the next phase of the systematic mapping.
-		count = 0;
-		try (PrintWriter csvOut = new PrintWriter(new File(CSV_RESULT_FILENAME)); PrintWriter htmlOut = new PrintWriter(new File(HTML_RESULT_FILENAME))) {
-			// Prints the beginning of the HTML file.
-			htmlOut.println("<html><body>\n<table border='1' cellpadding='3' cellspacing='0'>\n<tr><th>ID</th><th>Year</th><th>Sources</th><th>Title</th></tr>");
+	/** Cleans up a title read from the raw data (either file), removing surrounding spaces and double quotes. */
+	private static String cleanTitle(String title) {
+		return title.trim().replace("\"", "");
+	}
 
-			// Process all entries in order.
-			for (Map.Entry<String, Publication> entry : pubMap.entrySet()) {
-				Publication pub = entry.getValue();
+	/**
+	 * Merges the pairs of duplicates found by a similarity engine, returning the remaining publications in their
+	 * original order. Groups are formed transitively (union-find), so if A is similar to B and B to C, all three are
+	 * merged into the first one of the group. The normalized titles of the publications of each group (which can change
+	 * when they are merged) are kept in mergedTitles, under the publication that remains. Groups that already share a
+	 * source are not merged.
+	 */
+	private static List<Publication> mergeDuplicates(List<Publication> publications, List<int[]> pairs, Map<Publication, List<String>> mergedTitles) {
+		// Initially, each publication is its own group.
+		int[] parent = new int[publications.size()];
+		for (int i = 0; i < parent.length; i++) parent[i] = i;
 
-				// Outputs the line in CSV and HTML.
-				csvOut.printf("%d;%d;\"%s\";\"%s\"%n", ++count, pub.getYear(), pub.getSourcesString(), pub.getTitle());
-				htmlOut.printf("<tr><td>%d</td><td>%d</td><td>%s</td><td>%s</td></tr>", count, pub.getYear(), pub.getSourcesHtml(), pub.getTitle());
+		// Joins the groups of each pair, keeping the smallest index as the group representative.
+		for (int[] pair : pairs) {
+			int a = find(parent, pair[0]), b = find(parent, pair[1]);
+			if (a != b) {
+				Publication p1 = publications.get(Math.min(a, b));
+				Publication p2 = publications.get(Math.max(a, b));
+				if (p1.sharesSourceWith(p2)) {
+					System.out.printf("Not merging similar results from the same source:%n\t%d (%s): %s%n\t%d (%s): %s%n", p1.getYear(), p1.getSourcesString(), p1.getTitle(), p2.getYear(), p2.getSourcesString(), p2.getTitle());
+					continue;
+				}
+				System.out.printf("Merging similar results:%n\t%d (%s): %s%n\t%d (%s): %s%n", p1.getYear(), p1.getSourcesString(), p1.getTitle(), p2.getYear(), p2.getSourcesString(), p2.getTitle());
+				List<String> titles = mergedTitles.get(p1);
+				if (titles == null) mergedTitles.put(p1, titles = new ArrayList<>(Arrays.asList(p1.getNormalizedTitle())));
+				List<String> p2Titles = mergedTitles.remove(p2);
+				titles.addAll((p2Titles == null) ? Arrays.asList(p2.getNormalizedTitle()) : p2Titles);
+				p1.mergeWith(p2);
+				parent[Math.max(a, b)] = Math.min(a, b);
 			}
+		}
+
+		// Keeps only the group representatives.
+		List<Publication> merged = new ArrayList<>();
+		for (int i = 0; i < parent.length; i++) if (parent[i] == i) merged.add(publications.get(i));
+		return merged;
+	}
 
-			// Finishes the HTML file.
-			htmlOut.println("</table>\n</body></html>");
+	/** Finds the representative of the group of a publication, compressing the path along the way. */
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
 		}
+		return i;
+	}
 
-		// Reports statistics.
-		System.out.printf("Wrote %d lines to output files %s and %s. Done!%n%n", count, CSV_RESULT_FILENAME, HTML_RESULT_FILENAME);
+	/** Thrown while reading the raw data when the records processed in the previous run have changed. */
+	private static class StaleIndexException extends Exception {
+		/** Serialization version. */
+		private static final long serialVersionUID = 1L;
+
+		/** Constructor. */
+		StaleIndexException(String message) {
+			super(message);
+		}
 	}
 }
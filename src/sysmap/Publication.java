@@ -3,13 +3,27 @@ package sysmap;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import util.TitleNormalizer;
 
 /**
  * Domain class used by ProcessDuplicates.
  *
+ * To keep large searches (hundreds of thousands of publications) compact, source names are interned in a registry
+ * shared by all publications and each publication stores only a bitmask of source IDs (at most MAX_SOURCES different
+ * sources). The normalized title is computed once and cached, the list of source names is cached per combination of
+ * sources and the search URLs of each source are split into fixed parts once, when they are first needed.
+ *
  * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
  * @version 1.0
  */
@@ -17,6 +31,12 @@ public class Publication {
 	/** Name of the properties file with the search URL for different sources. */
 	private static final String SOURCE_SEARCH_PROPERTIES_FILE = "sysmap-sourcesearch.properties";
 	
+	/** Placeholder for the publication title in the search URLs. */
+	private static final String TITLE_PLACEHOLDER = "{0}";
+	
+	/** Maximum number of different sources, given that they are stored in a bitmask. */
+	public static final int MAX_SOURCES = 64;
+	
 	/** Database of search URLs to be able to produce HTML versions of a publication's sources. */
 	private static final Properties sourceSearchDB = new Properties();
 	static {
@@ -24,13 +44,31 @@ public class Publication {
 			sourceSearchDB.load(reader);
 		}
 		catch (IOException e) {
-			System.out.printf("Could not load source search properties file: %s. Sources as HTML will not contain links!");
+			System.out.printf("Could not load source search properties file: %s. Sources as HTML will not contain links!%n", SOURCE_SEARCH_PROPERTIES_FILE);
 		}
 	}
 	
+	/** Names of the interned sources, indexed by their IDs. */
+	private static final List<String> sourceNames = new CopyOnWriteArrayList<>();
+	
+	/** IDs of the interned sources, indexed by their names. */
+	private static final Map<String, Integer> sourceIds = new ConcurrentHashMap<>();
+	
+	/** Search URLs of the interned sources split at the title placeholder, indexed by their IDs (null if no URL). */
+	private static final List<String[]> sourceUrlTemplates = new CopyOnWriteArrayList<>();
+	
+	/** Cache of the IDs of the sources in alphabetical order of their names, indexed by bitmask. */
+	private static final Map<Long, int[]> sortedSourceIdsCache = new ConcurrentHashMap<>();
+	
+	/** Cache of the comma-separated source names, indexed by bitmask. */
+	private static final Map<Long, String> sourcesStringCache = new ConcurrentHashMap<>();
+	
 	/** Publication title. */
 	private String title;
 	
+	/** Cache of the normalized title (null if not yet computed). */
+	private String normalizedTitle;
+	
 	/** Publication year. */
 	private int year;
 	
@@ -40,14 +78,14 @@ public class Publication {
 	/** Publication's abstract. */
 	private String abztract;
 	
-	/** Sources that have returned this publication as result of the search. */
-	private Set<String> sources = new TreeSet<>();
+	/** Sources that have returned this publication as result of the search, as a bitmask of the IDs of the sources. */
+	private long sourceMask;
 
 	/** Constructor. */
 	public Publication(String title, int year, String source) {
 		this.title = title;
 		this.year = year;
-		sources.add(source);
+		addSource(source);
 	}
 	
 	/** Constructor. */
@@ -56,6 +94,32 @@ public class Publication {
 		this.keywords = keywords;
 		this.abztract = abztract;
 	}
+	
+	/** Constructor for when the normalized title has already been computed (e.g., as a sorting key). */
+	Publication(String title, String normalizedTitle, int year, String source) {
+		this(title, year, source);
+		this.normalizedTitle = normalizedTitle;
+	}
+	
+	/** Returns the ID of a source, interning it if it's the first time it's used. */
+	static int getSourceId(String source) {
+		Integer id = sourceIds.get(source);
+		if (id != null) return id;
+		
+		// Interns the source. Synchronized so concurrent parsers don't give the same source two IDs.
+		synchronized (sourceIds) {
+			id = sourceIds.get(source);
+			if (id == null) {
+				if (sourceNames.size() == MAX_SOURCES) throw new IllegalStateException("At most " + MAX_SOURCES + " different sources are supported!");
+				id = sourceNames.size();
+				String searchUrl = sourceSearchDB.getProperty(source);
+				sourceUrlTemplates.add((searchUrl == null) ? null : searchUrl.split(Pattern.quote(TITLE_PLACEHOLDER), -1));
+				sourceNames.add(source);
+				sourceIds.put(source, id);
+			}
+			return id;
+		}
+	}
 
 	/** Getter for title. */
 	public String getTitle() {
@@ -65,6 +129,7 @@ public class Publication {
 	/** Setter for title. */
 	public void setTitle(String title) {
 		this.title = title;
+		normalizedTitle = null;
 	}
 
 	/** Getter for year. */
@@ -77,14 +142,54 @@ public class Publication {
 		this.year = year;
 	}
 
-	/** Getter for sources. */
+	/** Returns the IDs of the sources of a bitmask in alphabetical order of their names. */
+	private static int[] getSortedSourceIds(long mask) {
+		int[] ids = sortedSourceIdsCache.get(mask);
+		if (ids == null) {
+			Map<String, Integer> sorted = new TreeMap<>();
+			for (long bits = mask; bits != 0; bits &= bits - 1) {
+				int id = Long.numberOfTrailingZeros(bits);
+				sorted.put(sourceNames.get(id), id);
+			}
+			ids = new int[sorted.size()];
+			int i = 0;
+			for (int id : sorted.values()) ids[i++] = id;
+			sortedSourceIdsCache.put(mask, ids);
+		}
+		return ids;
+	}
+
+	/** Returns a read-only view of the names of the sources, in alphabetical order. */
 	public Set<String> getSources() {
-		return sources;
+		Set<String> sources = new TreeSet<>();
+		for (int id : getSortedSourceIds(sourceMask)) sources.add(sourceNames.get(id));
+		return Collections.unmodifiableSet(sources);
 	}
 
 	/** Setter for sources. */
 	public void setSources(Set<String> sources) {
-		this.sources = sources;
+		sourceMask = 0;
+		for (String source : sources) addSource(source);
+	}
+	
+	/** Adds a source to the publication. */
+	public void addSource(String source) {
+		sourceMask |= 1L << getSourceId(source);
+	}
+	
+	/** Adds the sources of another publication to this one. */
+	public void addSources(Publication pub) {
+		sourceMask |= pub.sourceMask;
+	}
+	
+	/** Checks if the publication has at least one source in common with another one. */
+	public boolean sharesSourceWith(Publication pub) {
+		return (sourceMask & pub.sourceMask) != 0;
+	}
+	
+	/** Number of sources of the publication. */
+	public int getSourceCount() {
+		return Long.bitCount(sourceMask);
 	}
 	
 	/** Getter for keywords. */
@@ -107,43 +212,68 @@ public class Publication {
 		this.abztract = abztract;
 	}
 
+	/** Produces the title in lower case, without accents, punctuation and repeated spaces. */
+	public String getNormalizedTitle() {
+		if (normalizedTitle == null) normalizedTitle = normalize(title);
+		return normalizedTitle;
+	}
+
+	/** Normalizes a string in lower case, without accents, punctuation and repeated spaces (see TitleNormalizer). */
+	public static String normalize(String text) {
+		return TitleNormalizer.normalize(text);
+	}
+
 	/** Returns the only publication source for publications that have only one. */
 	public String getOnlySource() {
-		if (sources.size() == 1) return sources.iterator().next();
-		else throw new IllegalStateException("Publication \"" + title + "\" has " + sources.size() + " sources!");
+		if (getSourceCount() == 1) return sourceNames.get(Long.numberOfTrailingZeros(sourceMask));
+		else throw new IllegalStateException("Publication \"" + title + "\" has " + getSourceCount() + " sources!");
 	}
 	
 	/** Merges one publication with another. */
 	public void mergeWith(Publication pub) {
 		// Uses the longest title.
-		if (pub.title.length() > title.length()) title = pub.title;
+		if (pub.title.length() > title.length()) setTitle(pub.title);
 		
 		// Adds the other publications sources.
-		for (String source : pub.sources) sources.add(source);
+		addSources(pub);
 	}
 	
 	/** Produces a string with the sources names in alphabetical order. */
 	public String getSourcesString() {
-		StringBuilder builder = new StringBuilder();
-		for (String source : sources) builder.append(source).append(", ");
-		if (builder.length() > 1) builder.delete(builder.length() - 2, builder.length());
-		return builder.toString();
+		String sourcesString = sourcesStringCache.get(sourceMask);
+		if (sourcesString == null) {
+			StringBuilder builder = new StringBuilder();
+			for (int id : getSortedSourceIds(sourceMask)) builder.append(sourceNames.get(id)).append(", ");
+			if (builder.length() > 1) builder.delete(builder.length() - 2, builder.length());
+			sourcesString = builder.toString();
+			sourcesStringCache.put(sourceMask, sourcesString);
+		}
+		return sourcesString;
 	}
 	
 	/** Produces a string with the sources names in alphabetical order and HTML links to searching the paper in the source. */
 	public String getSourcesHtml() {
 		StringBuilder builder = new StringBuilder();
-		for (String source : sources) {
+		appendSourcesHtml(builder);
+		return builder.toString();
+	}
+	
+	/** Appends the sources names in alphabetical order and HTML links to searching the paper in the source to a builder. */
+	public void appendSourcesHtml(StringBuilder builder) {
+		boolean first = true;
+		for (int id : getSortedSourceIds(sourceMask)) {
+			if (!first) builder.append(", ");
+			first = false;
+			
 			// If this source has a search URL registered in the properties file, add an HTML link around its name.
-			if (sourceSearchDB.containsKey(source)) {
-				String searchUrl = ("" + sourceSearchDB.get(source)).replace("{0}", title);
-				source = "<a href=\"" + searchUrl + "\" target=\"_blank\">" + source + "</a>";
+			String source = sourceNames.get(id);
+			String[] template = sourceUrlTemplates.get(id);
+			if (template == null) builder.append(source);
+			else {
+				builder.append("<a href=\"").append(template[0]);
+				for (int i = 1; i < template.length; i++) builder.append(title).append(template[i]);
+				builder.append("\" target=\"_blank\">").append(source).append("</a>");
 			}
-			
-			// Adds the source to the list.
-			builder.append(source).append(", ");
 		}
-		if (builder.length() > 1) builder.delete(builder.length() - 2, builder.length());
-		return builder.toString();
 	}
 }
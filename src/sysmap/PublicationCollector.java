@@ -0,0 +1,26 @@
+package sysmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handler that simply collects the publications in a list, used by the parsers that return all publications at once.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+class PublicationCollector implements PublicationHandler {
+	/** The collected publications. */
+	private List<Publication> publications = new ArrayList<>();
+
+	/** @see sysmap.PublicationHandler#handle(sysmap.Publication) */
+	@Override
+	public void handle(Publication publication) {
+		publications.add(publication);
+	}
+
+	/** Getter for publications. */
+	public List<Publication> getPublications() {
+		return publications;
+	}
+}
@@ -0,0 +1,12 @@
+package sysmap;
+
+/**
+ * Callback used by the exported data parsers to hand over each publication as soon as it is parsed, so the contents of
+ * large files don't have to be kept in memory.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public interface PublicationHandler {
+	void handle(Publication publication) throws Exception;
+}
@@ -0,0 +1,360 @@
+package sysmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text inverted index over the title, keywords and abstract of publications, answering boolean queries in the
+ * syntax of BooleanQueryParser. Text is tokenized with Publication.normalize(), so matching ignores case, accents and
+ * punctuation. A single word matches publications that contain it, while quoted phrases (or words that are split in
+ * more than one token, e.g. run-time) match publications that contain their tokens in sequence in the same field.
+ *
+ * For each token, the index stores a posting list: the publications (as gaps between their numbers) that contain it,
+ * followed by the number of occurrences and the positions (also as gaps) of the token in each one. Numbers are encoded
+ * with variable-byte coding (7 bits per byte, the highest bit marks the last byte), so most of them take a single byte.
+ * The index can be saved to a file and loaded again, so it doesn't have to be rebuilt for each query.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class PublicationIndex {
+	/** Magic bytes at the beginning of the index file. */
+	private static final byte[] MAGIC = "SYSMAPX1".getBytes(StandardCharsets.US_ASCII);
+
+	/** Gap between the positions of the last token of a field and the first of the next one, so phrases don't span fields. */
+	private static final int FIELD_GAP = 1000;
+
+	/** Titles of the indexed publications, by number. */
+	private List<String> titles = new ArrayList<>();
+
+	/** Years of the indexed publications, by number. */
+	private List<Integer> years = new ArrayList<>();
+
+	/** Sources of the indexed publications (comma-separated), by number. */
+	private List<String> sources = new ArrayList<>();
+
+	/** Posting lists, indexed by token. */
+	private Map<String, Postings> postings = new HashMap<>();
+
+	/** Number of indexed publications. */
+	public int size() {
+		return titles.size();
+	}
+
+	/** Number of distinct tokens in the index. */
+	public int getTokenCount() {
+		return postings.size();
+	}
+
+	/** Title of the publication with the given number. */
+	public String getTitle(int doc) {
+		return titles.get(doc);
+	}
+
+	/** Year of the publication with the given number. */
+	public int getYear(int doc) {
+		return years.get(doc);
+	}
+
+	/** Sources of the publication with the given number, comma-separated. */
+	public String getSources(int doc) {
+		return sources.get(doc);
+	}
+
+	/** Adds a publication to the index, returning its number. */
+	public int add(Publication pub) {
+		int doc = titles.size();
+		titles.add(pub.getTitle());
+		years.add(pub.getYear());
+		sources.add(pub.getSourcesString());
+
+		// Collects the positions of each token in the fields of the publication.
+		Map<String, List<Integer>> positions = new LinkedHashMap<>();
+		int pos = 0;
+		for (String field : new String[] { pub.getTitle(), pub.getKeywords(), pub.getAbztract() }) {
+			if (field == null) continue;
+			for (String token : tokenize(field)) {
+				List<Integer> list = positions.get(token);
+				if (list == null) positions.put(token, list = new ArrayList<>());
+				list.add(pos++);
+			}
+			pos += FIELD_GAP;
+		}
+
+		// Appends the publication to the posting list of each token.
+		for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+			Postings list = postings.get(entry.getKey());
+			if (list == null) postings.put(entry.getKey(), list = new Postings());
+			list.add(doc, entry.getValue());
+		}
+		return doc;
+	}
+
+	/** Returns the numbers of the publications that satisfy the query, in order. */
+	public int[] search(String query) {
+		return new BooleanQueryParser<int[]>(query) {
+			@Override
+			int[] term(String text, boolean quoted) {
+				String[] tokens = tokenize(text);
+				if (tokens.length == 0) return new int[0];
+				return (tokens.length == 1) ? getDocs(tokens[0]) : searchPhrase(tokens);
+			}
+
+			@Override
+			int[] operation(boolean and, List<int[]> operands) {
+				return and ? intersect(operands) : union(operands);
+			}
+		}.parse();
+	}
+
+	/** Splits a text in normalized tokens. */
+	private static String[] tokenize(String text) {
+		String normalized = Publication.normalize(text);
+		return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+	}
+
+	/** Returns the numbers of the publications that contain a token. */
+	private int[] getDocs(String token) {
+		Postings list = postings.get(token);
+		if (list == null) return new int[0];
+		int[] docs = new int[list.docFrequency];
+		PostingsReader reader = new PostingsReader(list);
+		for (int i = 0; i < docs.length; i++) {
+			docs[i] = reader.nextDoc();
+			reader.skipPositions();
+		}
+		return docs;
+	}
+
+	/** Returns the numbers of the publications that contain the tokens in sequence. */
+	private int[] searchPhrase(String[] tokens) {
+		// Decodes the publications of each token, keeping where their positions are so only the ones needed are decoded.
+		// If a token is not in the index, nothing matches.
+		int[][] docs = new int[tokens.length][];
+		int[][] offsets = new int[tokens.length][];
+		PostingsReader[] readers = new PostingsReader[tokens.length];
+		for (int t = 0; t < tokens.length; t++) {
+			Postings list = postings.get(tokens[t]);
+			if (list == null) return new int[0];
+			docs[t] = new int[list.docFrequency];
+			offsets[t] = new int[list.docFrequency];
+			readers[t] = new PostingsReader(list);
+			for (int i = 0; i < docs[t].length; i++) {
+				docs[t][i] = readers[t].nextDoc();
+				offsets[t][i] = readers[t].offset;
+				readers[t].skipPositions();
+			}
+		}
+
+		// Goes through the publications that contain all tokens, looking for them in sequence: token t at position p + t,
+		// for some position p of the first one.
+		List<Integer> result = new ArrayList<>();
+		int[] idx = new int[tokens.length];
+		int[][] positions = new int[tokens.length][];
+		for (int i = 0; i < docs[0].length; i++) {
+			boolean all = true;
+			for (int t = 1; t < tokens.length && all; t++) all = (idx[t] = Arrays.binarySearch(docs[t], docs[0][i])) >= 0;
+			if (!all) continue;
+
+			idx[0] = i;
+			for (int t = 0; t < tokens.length; t++) positions[t] = readers[t].readPositions(offsets[t][idx[t]]);
+			for (int p : positions[0]) {
+				boolean sequence = true;
+				for (int t = 1; t < tokens.length && sequence; t++) sequence = Arrays.binarySearch(positions[t], p + t) >= 0;
+				if (sequence) {
+					result.add(docs[0][i]);
+					break;
+				}
+			}
+		}
+
+		int[] matches = new int[result.size()];
+		for (int i = 0; i < matches.length; i++) matches[i] = result.get(i);
+		return matches;
+	}
+
+	/** Intersects sorted lists of publication numbers, starting with the shortest ones. */
+	private static int[] intersect(List<int[]> lists) {
+		List<int[]> sorted = new ArrayList<>(lists);
+		Collections.sort(sorted, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				return Integer.compare(a.length, b.length);
+			}
+		});
+		int[] result = sorted.get(0);
+		for (int l = 1; l < sorted.size() && result.length > 0; l++) {
+			int[] other = sorted.get(l);
+			int[] merged = new int[result.length];
+			int i = 0, j = 0, k = 0;
+			while (i < result.length && j < other.length) {
+				if (result[i] == other[j]) {
+					merged[k++] = result[i++];
+					j++;
+				}
+				else if (result[i] < other[j]) i++;
+				else j++;
+			}
+			result = Arrays.copyOf(merged, k);
+		}
+		return result;
+	}
+
+	/** Unites sorted lists of publication numbers. */
+	private static int[] union(List<int[]> lists) {
+		int[] result = new int[0];
+		for (int[] other : lists) {
+			int[] merged = new int[result.length + other.length];
+			int i = 0, j = 0, k = 0;
+			while (i < result.length || j < other.length) {
+				if (j == other.length || (i < result.length && result[i] < other[j])) merged[k++] = result[i++];
+				else if (i == result.length || other[j] < result[i]) merged[k++] = other[j++];
+				else {
+					merged[k++] = result[i++];
+					j++;
+				}
+			}
+			result = Arrays.copyOf(merged, k);
+		}
+		return result;
+	}
+
+	/** Saves the index to a file. */
+	public void save(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.write(MAGIC);
+			out.writeInt(titles.size());
+			for (int doc = 0; doc < titles.size(); doc++) {
+				out.writeInt(years.get(doc));
+				out.writeUTF(sources.get(doc));
+				out.writeUTF(titles.get(doc));
+			}
+			out.writeInt(postings.size());
+			for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+				Postings list = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeInt(list.docFrequency);
+				out.writeInt(list.lastDoc);
+				out.writeInt(list.length);
+				out.write(list.data, 0, list.length);
+			}
+		}
+	}
+
+	/** Loads an index from a file. */
+	public static PublicationIndex load(File file) throws IOException {
+		PublicationIndex index = new PublicationIndex();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)) throw new IOException(file.getName() + " is not a sysmap full-text index!");
+			int docCount = in.readInt();
+			for (int doc = 0; doc < docCount; doc++) {
+				index.years.add(in.readInt());
+				index.sources.add(in.readUTF());
+				index.titles.add(in.readUTF());
+			}
+			int tokenCount = in.readInt();
+			for (int i = 0; i < tokenCount; i++) {
+				String token = in.readUTF();
+				Postings list = new Postings();
+				list.docFrequency = in.readInt();
+				list.lastDoc = in.readInt();
+				list.length = in.readInt();
+				list.data = new byte[list.length];
+				in.readFully(list.data);
+				index.postings.put(token, list);
+			}
+		}
+		return index;
+	}
+
+	/** Posting list of a token, encoded with variable-byte coding. */
+	private static class Postings {
+		private byte[] data = new byte[16];
+		private int length;
+		private int docFrequency;
+		private int lastDoc = -1;
+
+		/** Appends a publication with the positions of the token in it. */
+		void add(int doc, List<Integer> positions) {
+			writeVByte(doc - lastDoc);
+			writeVByte(positions.size());
+			int lastPosition = 0;
+			for (int position : positions) {
+				writeVByte(position - lastPosition);
+				lastPosition = position;
+			}
+			lastDoc = doc;
+			docFrequency++;
+		}
+
+		/** Writes a non-negative number using 7 bits per byte, setting the highest bit of the last one. */
+		private void writeVByte(int value) {
+			if (length + 5 > data.length) data = Arrays.copyOf(data, data.length * 2);
+			while (value >= 0x80) {
+				data[length++] = (byte) (value & 0x7F);
+				value >>>= 7;
+			}
+			data[length++] = (byte) (value | 0x80);
+		}
+	}
+
+	/** Decodes a posting list, one publication at a time. */
+	private static class PostingsReader {
+		private Postings list;
+		private int offset;
+		private int doc = -1;
+
+		PostingsReader(Postings list) {
+			this.list = list;
+		}
+
+		/** Advances to the next publication, returning its number. Its positions must be read or skipped next. */
+		int nextDoc() {
+			doc += readVByte();
+			return doc;
+		}
+
+		/** Reads the positions of the token in a publication, given where they are in the list. */
+		int[] readPositions(int positionsOffset) {
+			offset = positionsOffset;
+			int[] positions = new int[readVByte()];
+			int position = 0;
+			for (int i = 0; i < positions.length; i++) positions[i] = position += readVByte();
+			return positions;
+		}
+
+		/** Skips the positions of the token in the current publication. */
+		void skipPositions() {
+			int count = readVByte();
+			for (int i = 0; i < count; i++) readVByte();
+		}
+
+		/** Reads a number written by Postings.writeVByte(). */
+		private int readVByte() {
+			int value = 0, shift = 0;
+			byte b;
+			while (((b = list.data[offset++]) & 0x80) == 0) {
+				value |= b << shift;
+				shift += 7;
+			}
+			return value | ((b & 0x7F) << shift);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package sysmap;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Fingerprint of the raw records of a systematic mapping search read by ProcessDuplicates: for each source, the number
+ * of records read and a hash of their years and titles, in order (64-bit FNV-1a). It's saved in the TitleIndex, so the
+ * next run can check that the records it has already processed are still the first records of each source in the raw
+ * file. ParseExportedData writes the records of each source together, in the order of the source files, so exports
+ * appended to a source file keep the records of the previous ones in place.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class RawDataFingerprint {
+	/** Initial value of the FNV-1a hash. */
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	/** Prime of the FNV-1a hash. */
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/** Number of records and hash of each source, by source name. */
+	private Map<String, long[]> sources = new TreeMap<>();
+
+	/** Adds a record to the fingerprint of its source, returning how many records of that source have been added. */
+	public long add(String source, int year, String title) {
+		long[] data = sources.get(source);
+		if (data == null) sources.put(source, data = new long[] { 0, FNV_OFFSET_BASIS });
+		long hash = hash(data[1], year);
+		for (int i = 0; i < title.length(); i++) hash = hash(hash, title.charAt(i));
+		data[1] = hash(hash, '\n');
+		return ++data[0];
+	}
+
+	/** Returns the names of the sources. */
+	public Set<String> getSources() {
+		return sources.keySet();
+	}
+
+	/** Returns the number of records of a source (0 if it has none). */
+	public long getCount(String source) {
+		long[] data = sources.get(source);
+		return (data == null) ? 0 : data[0];
+	}
+
+	/** Returns the total number of records. */
+	public long getTotalCount() {
+		long total = 0;
+		for (long[] data : sources.values()) total += data[0];
+		return total;
+	}
+
+	/** Checks if the records added so far for a source are the same that were added to the other fingerprint. */
+	public boolean matches(String source, RawDataFingerprint other) {
+		long[] data = sources.get(source), otherData = other.sources.get(source);
+		return (data == null) ? (otherData == null) : (otherData != null) && (data[0] == otherData[0]) && (data[1] == otherData[1]);
+	}
+
+	/** Writes the fingerprint to a stream. */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(sources.size());
+		for (Map.Entry<String, long[]> entry : sources.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeLong(entry.getValue()[0]);
+			out.writeLong(entry.getValue()[1]);
+		}
+	}
+
+	/** Reads a fingerprint written by write(). */
+	public static RawDataFingerprint read(DataInputStream in) throws IOException {
+		RawDataFingerprint fingerprint = new RawDataFingerprint();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) fingerprint.sources.put(in.readUTF(), new long[] { in.readLong(), in.readLong() });
+		return fingerprint;
+	}
+
+	/** Adds a value to an FNV-1a hash, one byte at a time. */
+	private static long hash(long hash, int value) {
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			hash ^= (value >>> shift) & 0xFF;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+}
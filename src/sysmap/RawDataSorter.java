@@ -0,0 +1,212 @@
+package sysmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the raw records of a systematic mapping search by their normalized title using an external merge sort, so
+ * ProcessDuplicates can collapse records with the same title without keeping all of them in memory (only the resulting
+ * publications are kept, one per distinct title). Records are buffered up to a maximum amount, then the buffer is
+ * sorted and written to a temporary file (a sorted run). In the end, all runs are merged (k-way merge) while they are
+ * iterated, so equal keys come out one after another.
+ *
+ * Use add() to include all the records, then iterate with sortedIterator() and close the sorter to delete the
+ * temporary files.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class RawDataSorter implements Closeable {
+	/** Maximum number of records kept in memory before a sorted run is written to disk. */
+	private int maxRecordsInMemory;
+
+	/** Records that have not yet been written to disk. */
+	private List<SortRecord> buffer = new ArrayList<>();
+
+	/** Temporary files with the sorted runs. */
+	private List<File> runFiles = new ArrayList<>();
+
+	/** Number of records in each of the sorted runs. */
+	private List<Integer> runSizes = new ArrayList<>();
+
+	/** Readers of the sorted runs that are currently open. */
+	private List<RunReader> openReaders = new ArrayList<>();
+
+	/** Constructor. */
+	public RawDataSorter(int maxRecordsInMemory) {
+		this.maxRecordsInMemory = maxRecordsInMemory;
+	}
+
+	/** Adds a record to be sorted, writing a sorted run to disk if the buffer is full. */
+	public void add(String source, int year, String title) throws IOException {
+		buffer.add(new SortRecord(Publication.normalize(title), year, source, title));
+		if (buffer.size() >= maxRecordsInMemory) spill();
+	}
+
+	/** Number of sorted runs written to disk so far. */
+	public int getRunCount() {
+		return runFiles.size();
+	}
+
+	/**
+	 * Produces an iterator over all the records added to the sorter, in order of their normalized titles. Each record is
+	 * returned as a publication with a single source. Should be called only once, after all records have been added.
+	 */
+	public Iterator<Publication> sortedIterator() throws IOException {
+		// If nothing was written to disk, just sorts and iterates the buffer.
+		if (runFiles.isEmpty()) {
+			Collections.sort(buffer);
+			final Iterator<SortRecord> iterator = buffer.iterator();
+			return new Iterator<Publication>() {
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public Publication next() {
+					return iterator.next().toPublication();
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		// Otherwise, writes what's left as one last run and merges all the runs.
+		if (!buffer.isEmpty()) spill();
+		final PriorityQueue<RunReader> queue = new PriorityQueue<>();
+		for (int i = 0; i < runFiles.size(); i++) {
+			RunReader reader = new RunReader(runFiles.get(i), runSizes.get(i));
+			openReaders.add(reader);
+			if (reader.advance()) queue.add(reader);
+		}
+
+		return new Iterator<Publication>() {
+			@Override
+			public boolean hasNext() {
+				return !queue.isEmpty();
+			}
+
+			@Override
+			public Publication next() {
+				if (queue.isEmpty()) throw new NoSuchElementException();
+
+				// Takes the smallest record among the runs and puts its run back in the queue with the following record.
+				RunReader reader = queue.poll();
+				SortRecord record = reader.current;
+				try {
+					if (reader.advance()) queue.add(reader);
+				}
+				catch (IOException e) {
+					throw new IllegalStateException("Could not read sorted run " + reader.file.getName(), e);
+				}
+				return record.toPublication();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/** Closes the run readers and deletes the temporary files. */
+	@Override
+	public void close() throws IOException {
+		for (RunReader reader : openReaders) reader.in.close();
+		for (File file : runFiles) file.delete();
+		openReaders.clear();
+		runFiles.clear();
+		runSizes.clear();
+		buffer.clear();
+	}
+
+	/** Sorts the buffer and writes it to a temporary file as a sorted run. */
+	private void spill() throws IOException {
+		Collections.sort(buffer);
+		File file = File.createTempFile("sysmap-run-", ".tmp");
+		file.deleteOnExit();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			for (SortRecord record : buffer) {
+				out.writeUTF(record.key);
+				out.writeInt(record.year);
+				out.writeUTF(record.source);
+				out.writeUTF(record.title);
+			}
+		}
+		runFiles.add(file);
+		runSizes.add(buffer.size());
+		buffer = new ArrayList<>();
+	}
+
+	/** A raw record with its sorting key. */
+	private static class SortRecord implements Comparable<SortRecord> {
+		private String key;
+		private int year;
+		private String source;
+		private String title;
+
+		SortRecord(String key, int year, String source, String title) {
+			this.key = key;
+			this.year = year;
+			this.source = source;
+			this.title = title;
+		}
+
+		Publication toPublication() {
+			return new Publication(title, key, year, source);
+		}
+
+		@Override
+		public int compareTo(SortRecord o) {
+			return key.compareTo(o.key);
+		}
+	}
+
+	/** Reads the records of a sorted run, one at a time. */
+	private static class RunReader implements Comparable<RunReader> {
+		private File file;
+		private DataInputStream in;
+		private int remaining;
+		private SortRecord current;
+
+		RunReader(File file, int size) throws IOException {
+			this.file = file;
+			this.remaining = size;
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		}
+
+		/** Reads the next record of the run, returning false (and closing the file) if the run is over. */
+		boolean advance() throws IOException {
+			if (remaining == 0) {
+				current = null;
+				in.close();
+				return false;
+			}
+			remaining--;
+			current = new SortRecord(in.readUTF(), in.readInt(), in.readUTF(), in.readUTF());
+			return true;
+		}
+
+		@Override
+		public int compareTo(RunReader o) {
+			return current.compareTo(o.current);
+		}
+	}
+}
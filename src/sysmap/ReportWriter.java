@@ -0,0 +1,141 @@
+package sysmap;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the results of ProcessDuplicates to a CSV file and to HTML files that display them in tables. Rows are
+ * appended to a reusable buffer and written through buffered writers, without parsing format strings for every row.
+ *
+ * Big tables are hard for browsers to render, so the HTML is split in pages of at most pageSize rows, linked to each
+ * other. The first page is written to the given HTML file and the other ones to files with the page number appended to
+ * its name (e.g., sysmap-noduplicates-2.html). If all rows fit in one page, a single HTML file is produced, as before.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class ReportWriter implements Closeable {
+	/** Beginning of each HTML page, up to the header of the table. */
+	private static final String HTML_HEADER = "<html><body>\n<table border='1' cellpadding='3' cellspacing='0'>\n<tr><th>ID</th><th>Year</th><th>Sources</th><th>Title</th></tr>\n";
+
+	/** End of the table in each HTML page. */
+	private static final String HTML_TABLE_FOOTER = "</table>\n";
+
+	/** End of each HTML page. */
+	private static final String HTML_FOOTER = "</body></html>\n";
+
+	/** The HTML file of the first page. */
+	private File htmlFile;
+
+	/** Maximum number of rows in each HTML page. */
+	private int pageSize;
+
+	/** Writer of the CSV file. */
+	private Writer csvOut;
+
+	/** Writer of the current HTML page. */
+	private Writer htmlOut;
+
+	/** Number of the current HTML page (starting at 1). */
+	private int page = 0;
+
+	/** Number of rows in the current HTML page. */
+	private int pageRows = 0;
+
+	/** Number of rows written so far. */
+	private int rowCount = 0;
+
+	/** Buffer in which each row is built before being written. */
+	private StringBuilder builder = new StringBuilder();
+
+	/** Constructor. */
+	public ReportWriter(File csvFile, File htmlFile, int pageSize) throws IOException {
+		this.htmlFile = htmlFile;
+		this.pageSize = pageSize;
+		csvOut = new BufferedWriter(new FileWriter(csvFile));
+	}
+
+	/** Getter for rowCount. */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/** Number of HTML pages written so far. */
+	public int getPageCount() {
+		return page;
+	}
+
+	/** Writes a publication with the given ID as a new row of the CSV file and of the HTML table. */
+	public void write(int id, Publication pub) throws IOException {
+		// Starts a new HTML page, linking the previous one to it, when the current one is full.
+		if (htmlOut == null || pageRows == pageSize) startPage();
+
+		// Outputs the line in CSV.
+		builder.setLength(0);
+		builder.append(id).append(';').append(pub.getYear()).append(";\"").append(pub.getSourcesString()).append("\";\"").append(pub.getTitle()).append("\"").append(System.lineSeparator());
+		csvOut.append(builder);
+
+		// Outputs the line in HTML.
+		builder.setLength(0);
+		builder.append("<tr><td>").append(id).append("</td><td>").append(pub.getYear()).append("</td><td>");
+		pub.appendSourcesHtml(builder);
+		builder.append("</td><td>").append(pub.getTitle()).append("</td></tr>\n");
+		htmlOut.append(builder);
+
+		pageRows++;
+		rowCount++;
+	}
+
+	/** Finishes the current HTML page (if any) and starts the next one. */
+	private void startPage() throws IOException {
+		if (htmlOut != null) finishPage(true);
+
+		page++;
+		pageRows = 0;
+		htmlOut = new BufferedWriter(new FileWriter(getPageFile(page)));
+		htmlOut.write(HTML_HEADER);
+	}
+
+	/** Finishes the current HTML page, with links to the previous and (if there is one) the next pages. */
+	private void finishPage(boolean hasNext) throws IOException {
+		htmlOut.write(HTML_TABLE_FOOTER);
+		if (page > 1 || hasNext) {
+			htmlOut.write("<p>");
+			if (page > 1) htmlOut.write("<a href=\"" + getPageFile(page - 1).getName() + "\">&laquo; Previous</a> ");
+			htmlOut.write("Page " + page);
+			if (hasNext) htmlOut.write(" <a href=\"" + getPageFile(page + 1).getName() + "\">Next &raquo;</a>");
+			htmlOut.write("</p>\n");
+		}
+		htmlOut.write(HTML_FOOTER);
+		htmlOut.close();
+		htmlOut = null;
+	}
+
+	/** Produces the file of an HTML page: the given HTML file for the first page, numbered files for the others. */
+	private File getPageFile(int number) {
+		if (number == 1) return htmlFile;
+		String name = htmlFile.getName();
+		int dot = name.lastIndexOf('.');
+		String numbered = (dot < 0) ? name + "-" + number : name.substring(0, dot) + "-" + number + name.substring(dot);
+		return new File(htmlFile.getAbsoluteFile().getParentFile(), numbered);
+	}
+
+	/** Finishes the files and deletes the pages left by previous runs that had more results. */
+	@Override
+	public void close() throws IOException {
+		try {
+			// Writes at least one (possibly empty) page.
+			if (htmlOut == null && page == 0) startPage();
+			if (htmlOut != null) finishPage(false);
+		}
+		finally {
+			csvOut.close();
+		}
+
+		for (int number = page + 1; getPageFile(number).exists(); number++) getPageFile(number).delete();
+	}
+}
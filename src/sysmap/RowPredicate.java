@@ -0,0 +1,18 @@
+package sysmap;
+
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Condition on a row of the CSV files used in the steps of a systematic mapping (e.g., by Process1stFilter). See
+ * RowPredicates for the available conditions.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public interface RowPredicate {
+	/** Checks if the row satisfies the condition. */
+	boolean test(CSVRecord record);
+
+	/** Describes the condition, for reports. */
+	String getDescription();
+}
@@ -0,0 +1,94 @@
+package sysmap;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Factory of the conditions (see RowPredicate) that can be combined to filter the rows of the CSV files used in the
+ * steps of a systematic mapping. Each condition refers to a column by its index; rows that don't have the column don't
+ * satisfy the condition.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public final class RowPredicates {
+	/** Separator of the names in a column with many sources (e.g., "IEEE, SCOPUS"). */
+	private static final Pattern SOURCES_SEPARATOR = Pattern.compile("\\s*,\\s*");
+
+	/** Not to be instantiated. */
+	private RowPredicates() { }
+
+	/** Rows whose column starts with the given status (ignoring case and surrounding spaces), e.g. OK. */
+	public static RowPredicate status(final int column, final String status) {
+		return new RowPredicate() {
+			@Override
+			public boolean test(CSVRecord record) {
+				if (record.size() <= column) return false;
+				String value = record.get(column).trim();
+				return value.regionMatches(true, 0, status, 0, status.length());
+			}
+
+			@Override
+			public String getDescription() {
+				return "status starts with " + status;
+			}
+		};
+	}
+
+	/** Rows whose column has a year between minYear and maxYear (inclusive). */
+	public static RowPredicate yearRange(final int column, final int minYear, final int maxYear) {
+		return new RowPredicate() {
+			@Override
+			public boolean test(CSVRecord record) {
+				if (record.size() <= column) return false;
+				int year = YearExtractor.extract(record.get(column).trim());
+				return year != YearExtractor.NO_YEAR && year >= minYear && year <= maxYear;
+			}
+
+			@Override
+			public String getDescription() {
+				return "year in " + minYear + "-" + maxYear;
+			}
+		};
+	}
+
+	/** Rows whose column (a comma-separated list of sources) has at least one of the given sources (ignoring case). */
+	public static RowPredicate anySource(final int column, String... sources) {
+		final Set<String> accepted = new HashSet<>();
+		for (String source : sources) accepted.add(source.trim().toLowerCase());
+		final String description = "sources include any of " + Arrays.toString(sources);
+		return new RowPredicate() {
+			@Override
+			public boolean test(CSVRecord record) {
+				if (record.size() <= column) return false;
+				for (String source : SOURCES_SEPARATOR.split(record.get(column).trim())) if (accepted.contains(source.toLowerCase())) return true;
+				return false;
+			}
+
+			@Override
+			public String getDescription() {
+				return description;
+			}
+		};
+	}
+
+	/** Rows whose column contains a match of the regular expression (ignoring case). */
+	public static RowPredicate matches(final int column, final String regex) {
+		final Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+		return new RowPredicate() {
+			@Override
+			public boolean test(CSVRecord record) {
+				return record.size() > column && pattern.matcher(record.get(column)).find();
+			}
+
+			@Override
+			public String getDescription() {
+				return "matches /" + regex + "/";
+			}
+		};
+	}
+}
@@ -0,0 +1,116 @@
+package sysmap;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Iterator;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Searches the titles, keywords and abstracts of the publications collected by ParseExportedData (or ParseSpringer)
+ * using a full-text index (see PublicationIndex), e.g. to screen the results of a systematic mapping search before the
+ * 1st filter. Queries use the syntax of the search engines of digital libraries, e.g.:
+ *
+ * ("goal model" OR "requirements model") AND (runtime OR monitoring)
+ *
+ * The query can be given as arguments. Otherwise, queries are read from the standard input, one per line, until an
+ * empty line is given.
+ *
+ * The index is built from sysmap-raw.bin (or sysmap-raw.csv, if the binary file doesn't exist) and saved in
+ * sysmap-raw.ftx. It's rebuilt automatically when the raw data is newer than the index.
+ *
+ * I created this script to automate some steps of a systematic literature mapping / systematic literature review
+ * processes. See http://en.wikipedia.org/wiki/Systematic_review.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class SearchPublications {
+	/** Source file with the raw result of the search, in CSV. */
+	private static final String RAW_FILENAME = "sysmap-raw.csv";
+
+	/** Source file with the raw result of the search, in the binary columnar format. */
+	private static final String RAW_BINARY_FILENAME = "sysmap-raw.bin";
+
+	/** File in which the index is saved. */
+	private static final String INDEX_FILENAME = "sysmap-raw.ftx";
+
+	/** Format of the CSV source file: semicolon-separated values, possibly quoted. */
+	private static final CSVFormat RAW_FORMAT = CSVFormat.DEFAULT.withDelimiter(';');
+
+	/** Maximum number of results listed for each query. */
+	private static final int MAX_RESULTS = 50;
+
+	/** The program. */
+	public static void main(String[] args) throws Exception {
+		PublicationIndex index = openIndex();
+
+		// Answers the query given as arguments or the ones read from the standard input.
+		if (args.length > 0) {
+			StringBuilder query = new StringBuilder();
+			for (String arg : args) query.append(arg).append(' ');
+			search(index, query.toString().trim());
+		}
+		else {
+			BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+			String query;
+			System.out.print("Query (empty to quit): ");
+			while ((query = in.readLine()) != null && !query.trim().isEmpty()) {
+				search(index, query);
+				System.out.print("Query (empty to quit): ");
+			}
+		}
+	}
+
+	/** Loads the index or, if it doesn't exist or is outdated, builds it from the raw data and saves it. */
+	private static PublicationIndex openIndex() throws Exception {
+		File rawFile = new File(RAW_FILENAME), rawBinaryFile = new File(RAW_BINARY_FILENAME), indexFile = new File(INDEX_FILENAME);
+		// Uses the binary columnar version of the raw file only if it's up to date (as in ProcessDuplicates).
+		boolean binary = rawBinaryFile.exists() && (!rawFile.exists() || rawBinaryFile.lastModified() >= rawFile.lastModified());
+		File source = binary ? rawBinaryFile : rawFile;
+		long start = System.currentTimeMillis();
+		if (indexFile.exists() && indexFile.lastModified() >= source.lastModified()) {
+			PublicationIndex index = PublicationIndex.load(indexFile);
+			System.out.printf("Loaded index of %d publications (%d tokens) from %s in %d ms.%n%n", index.size(), index.getTokenCount(), INDEX_FILENAME, System.currentTimeMillis() - start);
+			return index;
+		}
+
+		// Builds the index, reading keywords and abstracts from the raw data.
+		PublicationIndex index = new PublicationIndex();
+		if (binary) try (ColumnarFileReader reader = new ColumnarFileReader(rawBinaryFile)) {
+			for (Iterator<Publication> iterator = reader.iterator(true); iterator.hasNext();) index.add(iterator.next());
+		}
+		else try (Reader reader = new FileReader(rawFile); CSVParser parser = new CSVParser(reader, RAW_FORMAT)) {
+			for (CSVRecord record : parser) {
+				if (record.getRecordNumber() == 1 || record.size() < 3) continue;
+				int year = YearExtractor.extract(record.get(1).trim());
+				String keywords = (record.size() > 3) ? record.get(3) : "";
+				String abztract = (record.size() > 4) ? record.get(4) : "";
+				index.add(new Publication(record.get(2).trim(), Math.max(year, 0), keywords, abztract, record.get(0).trim()));
+			}
+		}
+		index.save(indexFile);
+		System.out.printf("Indexed %d publications (%d tokens) from %s in %d ms, saved to %s.%n%n", index.size(), index.getTokenCount(), source.getName(), System.currentTimeMillis() - start, INDEX_FILENAME);
+		return index;
+	}
+
+	/** Answers a query, listing the first results. */
+	private static void search(PublicationIndex index, String query) {
+		try {
+			long start = System.nanoTime();
+			int[] docs = index.search(query);
+			System.out.printf("%d publication(s) match %s (%.2f ms).%n", docs.length, query, (System.nanoTime() - start) / 1000000.0);
+			for (int i = 0; i < docs.length && i < MAX_RESULTS; i++) System.out.printf("\t%d (%s): %s%n", index.getYear(docs[i]), index.getSources(docs[i]), index.getTitle(docs[i]));
+			if (docs.length > MAX_RESULTS) System.out.printf("\t... and %d more.%n", docs.length - MAX_RESULTS);
+			System.out.println();
+		}
+		catch (IllegalArgumentException e) {
+			System.out.printf("Invalid query: %s%n%n", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package sysmap;
+
+import java.util.List;
+
+/**
+ * Interface for the engines used by ProcessDuplicates to find publications that are likely to be duplicates of each
+ * other, even if their titles are not exactly the same.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public interface SimilarityEngine {
+	/**
+	 * Finds the pairs of publications that are considered duplicates. Each pair is returned as an array with two
+	 * indexes of the given list, the smaller one first.
+	 */
+	List<int[]> findDuplicates(List<Publication> publications);
+
+	/** Name of the engine, used for reporting. */
+	String getName();
+}
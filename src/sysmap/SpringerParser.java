@@ -1,103 +1,89 @@
 package sysmap;
 
-import java.util.ArrayList;
-import java.util.List;
-
-
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import web.HttpCache;
+
 /**
- * TODO: document this type.
+ * Goes through the results of a search in Springer Link (the first 20 pages), visiting the page of each article and
+ * printing the ones whose title, abstract and keywords satisfy QUERY. The query is compiled once (see KeywordQuery) and
+ * each article is checked as soon as it's parsed, in a single pass over its text.
  *
  * @author Pedro Negri
  * @version 1.1
  */
 public class SpringerParser {
+	/** Timeout of each request (in milliseconds). */
+	private static final int TIMEOUT = 60000;
+
 	private static final String START_URL = "http://link.springer.com/search/page/1?facet-discipline=%22Computer+Science%22&query=%28%28%22requirements+model%22+OR+%22requirements+reflection%22+OR+%22requirements+engineering%22+OR+%22requirements+analysis%22+OR+%22gore%22+OR+%22goal+model%22+OR+%22goal+models%22+OR+%22goal+analysis%22+OR+%22goal+reasoning%22+OR+%22softgoals%22+OR+%22specification+of+goals%22%29+AND+%28%22runtime%22+OR+%22run+time%22+OR+%22monitoring%22%29%29&facet-content-type=%22Article%22";
 
 
+	/** Query that papers must satisfy to be printed (see KeywordQuery). */
+	private static final String QUERY = "(\"requirements model\" OR \"requirements reflection\" OR \"requirements engineering\" OR \"requirements analysis\" OR \"gore\" OR \"goal model\" OR \"goal models\" OR \"goal analysis\" OR \"goal reasoning\" OR \"softgoals\" OR \"specification of goals\") AND (\"runtime\" OR \"run time\" OR \"monitoring\")";
+
 	/** Main method. */
 	public static void main(String[] args) throws Exception {
+		KeywordQuery query = KeywordQuery.compile(QUERY);
+
 		// Extracts the base address of the URL.
 		String baseUrl = START_URL.substring(0, START_URL.indexOf('/', 7));
 		// Processes all pages, following "next" links.
 		String url = START_URL;
-		List<String> papers = new ArrayList<String>();
-		int i = 0;
-		
+		int i = 0, count = 0, matches = 0;
 		
-		while (url != null && i!=20) {
-			// Opens the page and extracts the HTML DOM structure into Jsoup.
-			Document doc = Jsoup.connect(url).timeout(10000*10000).get();
-			url = null;
-			// Looks for the first table in the document, where the names of the
-			// students are supposed to be.
-			Element resultsList = doc.select("#results-list").first();
-			Elements lis = resultsList.select("li");
-			String paperUrl;
-			Document paperDoc;
-			Elements keyLis;
+		// Pages are kept in the shared HTTP cache, so running again parses them from disk.
+		try (HttpCache cache = new HttpCache()) {
+			while (url != null && i!=20) {
+				// Opens the page and extracts the HTML DOM structure into Jsoup.
+				Document doc = cache.get(url, TIMEOUT);
+				url = null;
+				// Looks for the first table in the document, where the names of the
+				// students are supposed to be.
+				Element resultsList = doc.select("#results-list").first();
+				Elements lis = resultsList.select("li");
+				String paperUrl;
+				Document paperDoc;
+				Elements keyLis;
 			
-			String paper;
-			for (Element li : lis){
+				StringBuilder paper = new StringBuilder();
+				for (Element li : lis){
 
-				paperUrl = "http://link.springer.com" + li.select("h2").first().select("a").first().attr("href");
-				paperDoc = Jsoup.connect(paperUrl).timeout(10000*10000).get();
+					paperUrl = "http://link.springer.com" + li.select("h2").first().select("a").first().attr("href");
+					paperDoc = cache.get(paperUrl, TIMEOUT);
 
-				keyLis = paperDoc.select("div.KeywordGroup").select("span");
-				paper = paperDoc.select(".ArticleTitle").text() + "\n";
-				paper = paper + paperDoc.select(".Para").html() + "\n";
-				for(Element keyLi : keyLis){
-					paper = paper + keyLi.html() + ", ";
-				}
-				paper = paper + "\n";
-				papers.add(paper);
+					keyLis = paperDoc.select("div.KeywordGroup").select("span");
+					paper.setLength(0);
+					paper.append(paperDoc.select(".ArticleTitle").text()).append('\n');
+					paper.append(paperDoc.select(".Para").html()).append('\n');
+					for(Element keyLi : keyLis){
+						paper.append(keyLi.html()).append(", ");
+					}
+					paper.append('\n');
 
-				//System.out.println(paper);
-				
-			}
+					// Filters the paper as soon as it's parsed, printing it if it matches the query.
+					count++;
+					if (query.matches(paper)) {
+						matches++;
+						System.out.println(paper);
+					}
+				}
 
-			i = i+1;
-			System.out.println(i);
+				i = i+1;
+				System.out.println(i);
 
-			Elements nextLinks = doc.select("a.next");
-			if (!nextLinks.isEmpty())
-				url = nextLinks.first().attr("href");
-			if (url != null && url.startsWith("/"))
-				url = baseUrl + url;
+				Elements nextLinks = doc.select("a.next");
+				if (!nextLinks.isEmpty())
+					url = nextLinks.first().attr("href");
+				if (url != null && url.startsWith("/"))
+					url = baseUrl + url;
 			
 
-		}
-		String pl;
-		for(String p : papers){
-			
-			pl = p.toLowerCase();
-			
-			if((pl.contains("requirements model") |
-					pl.contains("requirements reflection") |
-					pl.contains("requirements engineering") |
-					pl.contains("requirements analysis") |
-					pl.contains("gore") |
-					pl.contains("goal model") |
-					pl.contains("goal models") |
-					pl.contains("goal analysis") |
-					pl.contains("goal reasoning") |
-					pl.contains("softgoals") |
-					pl.contains("specification of goals")) 
-					&&
-					(pl.contains("runtime") |
-					pl.contains("run time") |
-					pl.contains("monitoring"))){
-				System.out.println(p);	
 			}
-			
-			
+			System.out.printf("HTTP cache: %s.%n", cache.getStatistics());
 		}
-		
-		
-		
+		System.out.printf("%d of %d papers match the query %s.%n", matches, count, QUERY);
 	}
 }
\ No newline at end of file
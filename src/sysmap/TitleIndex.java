@@ -0,0 +1,202 @@
+package sysmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persistent index of the publications produced by ProcessDuplicates, which allows new raw data to be merged with the
+ * results of a previous run without processing everything again. Each merged publication has a stable ID and is indexed
+ * by its normalized title (exact and prefix matches) and by the LSH bucket keys of MinHashSimilarityEngine (near
+ * duplicates), so probing a new record costs a few lookups instead of a pass over all publications.
+ *
+ * The index also records a fingerprint of the raw records that have already been processed (see RawDataFingerprint),
+ * so only the records added to each source after the last run need to be probed and a raw file that has changed in
+ * other ways can be detected.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class TitleIndex {
+	/** Magic bytes at the beginning of the index file. */
+	private static final byte[] MAGIC = "SYSMAPI2".getBytes(StandardCharsets.US_ASCII);
+
+	/** Engine used to compute bucket keys and confirm near duplicates. */
+	private MinHashSimilarityEngine engine;
+
+	/** Maximum difference between the years of two publications for their titles to be compared by prefix. */
+	private int yearTolerance;
+
+	/** Fingerprint of the raw records that have already been processed. */
+	private RawDataFingerprint fingerprint = new RawDataFingerprint();
+
+	/** The indexed publications. The ID of a publication is its position in the list plus one. */
+	private List<Publication> publications = new ArrayList<>();
+
+	/** LSH bucket keys of each publication, in the same order. */
+	private List<long[]> bandKeys = new ArrayList<>();
+
+	/** Normalized titles mapped to the IDs of the publications, sorted so prefixes can be found. */
+	private TreeMap<String, Integer> keys = new TreeMap<>();
+
+	/** LSH buckets, mapping bucket keys to the IDs of the publications in them. */
+	private Map<Long, List<Integer>> buckets = new HashMap<>();
+
+	/** Constructor. */
+	public TitleIndex(MinHashSimilarityEngine engine, int yearTolerance) {
+		this.engine = engine;
+		this.yearTolerance = yearTolerance;
+	}
+
+	/** Getter for fingerprint. */
+	public RawDataFingerprint getFingerprint() {
+		return fingerprint;
+	}
+
+	/** Setter for fingerprint. */
+	public void setFingerprint(RawDataFingerprint fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/** Getter for publications. */
+	public List<Publication> getPublications() {
+		return publications;
+	}
+
+	/** Adds a new publication to the index, returning its ID. */
+	public int add(Publication pub) {
+		return add(pub, engine.getBandKeys(pub.getNormalizedTitle()));
+	}
+
+	/** Adds a new publication to the index with previously computed bucket keys, returning its ID. */
+	private int add(Publication pub, long[] pubBandKeys) {
+		publications.add(pub);
+		bandKeys.add(pubBandKeys);
+		int id = publications.size();
+
+		addTitle(id, pub.getNormalizedTitle());
+		for (long bandKey : pubBandKeys) {
+			List<Integer> bucket = buckets.get(bandKey);
+			if (bucket == null) buckets.put(bandKey, bucket = new ArrayList<>(2));
+			bucket.add(id);
+		}
+		return id;
+	}
+
+	/**
+	 * Looks for a publication that is a duplicate of the given one: same normalized title, normalized titles that are
+	 * prefixes of one another or near duplicates according to the engine. Publications that share a source with the
+	 * given one are only matched by the exact title. Returns its ID or 0 if there is none.
+	 */
+	public int probe(Publication pub) {
+		String key = pub.getNormalizedTitle();
+
+		// Checks for the exact title.
+		Integer id = keys.get(key);
+		if (id != null) return id;
+
+		// Checks the neighbours in the sorted map for prefixes.
+		if (!key.isEmpty()) {
+			Map.Entry<String, Integer> lower = keys.lowerEntry(key);
+			if ((lower != null) && !lower.getKey().isEmpty() && key.startsWith(lower.getKey()) && canMerge(lower.getValue(), pub)) return lower.getValue();
+			Map.Entry<String, Integer> higher = keys.higherEntry(key);
+			if ((higher != null) && higher.getKey().startsWith(key) && canMerge(higher.getValue(), pub)) return higher.getValue();
+		}
+
+		// Checks the publications that share an LSH bucket.
+		for (long bandKey : engine.getBandKeys(key)) {
+			List<Integer> bucket = buckets.get(bandKey);
+			if (bucket != null) for (int candidate : bucket)
+				if (engine.isSimilar(publications.get(candidate - 1), pub) && !publications.get(candidate - 1).sharesSourceWith(pub)) return candidate;
+		}
+
+		return 0;
+	}
+
+	/** Merges a publication into the indexed one with the given ID, indexing also its title. */
+	public void merge(int id, Publication pub) {
+		publications.get(id - 1).mergeWith(pub);
+		addTitle(id, pub.getNormalizedTitle());
+	}
+
+	/**
+	 * Indexes a normalized title for the publication with the given ID (e.g., the title of a publication that has been
+	 * merged into it), unless the title is already indexed.
+	 */
+	public void addTitle(int id, String normalizedTitle) {
+		if (!keys.containsKey(normalizedTitle)) keys.put(normalizedTitle, id);
+	}
+
+	/** Checks if the year of the indexed publication with the given ID is within the tolerance and they share no source. */
+	private boolean canMerge(int id, Publication pub) {
+		Publication indexed = publications.get(id - 1);
+		return (Math.abs(indexed.getYear() - pub.getYear()) <= yearTolerance) && !indexed.sharesSourceWith(pub);
+	}
+
+	/** Saves the index to a file. */
+	public void save(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.write(MAGIC);
+			fingerprint.write(out);
+
+			// Writes the publications, their bucket keys and the ID of each indexed title.
+			out.writeInt(publications.size());
+			for (int i = 0; i < publications.size(); i++) {
+				Publication pub = publications.get(i);
+				out.writeInt(pub.getYear());
+				out.writeUTF(pub.getTitle());
+				out.writeInt(pub.getSourceCount());
+				for (String source : pub.getSources()) out.writeUTF(source);
+				long[] pubBandKeys = bandKeys.get(i);
+				out.writeInt(pubBandKeys.length);
+				for (long bandKey : pubBandKeys) out.writeLong(bandKey);
+			}
+			out.writeInt(keys.size());
+			for (Map.Entry<String, Integer> entry : keys.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue());
+			}
+		}
+	}
+
+	/** Loads an index from a file. The engine and tolerance should be the same that were used to create it. */
+	public static TitleIndex load(File file, MinHashSimilarityEngine engine, int yearTolerance) throws IOException {
+		TitleIndex index = new TitleIndex(engine, yearTolerance);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)) throw new IOException(file.getName() + " is not a sysmap title index!");
+			index.fingerprint = RawDataFingerprint.read(in);
+
+			// Reads the publications and their bucket keys.
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				int year = in.readInt();
+				String title = in.readUTF();
+				int sourceCount = in.readInt();
+				Publication pub = new Publication(title, year, in.readUTF());
+				for (int j = 1; j < sourceCount; j++) pub.addSource(in.readUTF());
+				long[] pubBandKeys = new long[in.readInt()];
+				for (int j = 0; j < pubBandKeys.length; j++) pubBandKeys[j] = in.readLong();
+				index.add(pub, pubBandKeys);
+			}
+
+			// Reads the indexed titles (including titles of publications that have been merged).
+			int keyCount = in.readInt();
+			for (int i = 0; i < keyCount; i++) index.keys.put(in.readUTF(), in.readInt());
+		}
+		return index;
+	}
+}
@@ -0,0 +1,41 @@
+package sysmap;
+
+/**
+ * Extracts publication years from the cells of exported data, which can be just the year (e.g., "2015") or contain it
+ * among other words (e.g., "Jun 2015"). Looks for the first space-separated token made of exactly four digits scanning
+ * the characters directly, so no strings, arrays or regular expression matchers are created for each cell.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class YearExtractor {
+	/** Value returned when no year can be found. */
+	public static final int NO_YEAR = -1;
+
+	/** Returns the year contained in the text or NO_YEAR if there isn't one. */
+	public static int extract(CharSequence text) {
+		int len = text.length();
+		int i = 0;
+		while (i < len) {
+			// Finds the end of the current token.
+			int end = i;
+			while (end < len && text.charAt(end) != ' ') end++;
+
+			// Checks if the token is made of four digits.
+			if (end - i == 4) {
+				int year = 0;
+				int j = i;
+				for (; j < end; j++) {
+					char c = text.charAt(j);
+					if (c < '0' || c > '9') break;
+					year = year * 10 + (c - '0');
+				}
+				if (j == end) return year;
+			}
+
+			// Moves on to the next token.
+			i = end + 1;
+		}
+		return NO_YEAR;
+	}
+}
@@ -0,0 +1,99 @@
+package text;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * A publication of the program: the Lattes production entries of the same publication in the CVs of different members
+ * (i.e., co-authored by them), collapsed into one record listing all of them. Type, title, venue and authors are
+ * taken from the first entry. See ProductionAggregator.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class AggregatedProduction implements Comparable<AggregatedProduction> {
+	/** Type of the publication (e.g., "Conferência / COMPLETO"). */
+	private String type;
+
+	/** Publication year. */
+	private int year;
+
+	/** Publication title. */
+	private String title;
+
+	/** Venue (conference, journal, book, magazine or publisher). */
+	private String venue;
+
+	/** Authors, as listed in the CV. */
+	private String authors;
+
+	/** Members of the program that have the publication in their CVs, in alphabetical order. */
+	private SortedSet<String> members = new TreeSet<>();
+
+	/** Constructor. */
+	AggregatedProduction(LattesProduction entry) {
+		this.type = entry.getType();
+		this.year = entry.getYear();
+		this.title = entry.getTitle();
+		this.venue = entry.getVenue();
+		this.authors = entry.getAuthors();
+		members.add(entry.getResearcher());
+	}
+
+	/** Getter for type. */
+	public String getType() {
+		return type;
+	}
+
+	/** Getter for year. */
+	public int getYear() {
+		return year;
+	}
+
+	/** Getter for title. */
+	public String getTitle() {
+		return title;
+	}
+
+	/** Getter for venue. */
+	public String getVenue() {
+		return venue;
+	}
+
+	/** Getter for authors. */
+	public String getAuthors() {
+		return authors;
+	}
+
+	/** Getter for members. */
+	public SortedSet<String> getMembers() {
+		return members;
+	}
+
+	/** @see java.lang.Comparable#compareTo(java.lang.Object) */
+	@Override
+	public int compareTo(AggregatedProduction o) {
+		int cmp = Integer.compare(year, o.year);
+		if (cmp != 0) return cmp;
+
+		cmp = title.compareTo(o.title);
+		if (cmp != 0) return cmp;
+
+		return venue.compareTo(o.venue);
+	}
+
+	/** Produces a line of the CSV file, in the same format as LattesProduction.toCSV(), listing all the members. */
+	public String toCSV() {
+		StringBuilder names = new StringBuilder();
+		for (String member : members) names.append(names.length() == 0 ? "" : "; ").append(member);
+
+		StringBuilder builder = new StringBuilder();
+		builder.append('"').append(names).append('"').append(',');
+		builder.append('"').append(year).append('"').append(',');
+		builder.append('"').append(type).append('"').append(',');
+		builder.append('"').append(title).append('"').append(',');
+		builder.append('"').append(venue).append('"').append(',');
+		builder.append('"').append(authors).append('"').append(',');
+		return builder.toString();
+	}
+}
@@ -4,24 +4,26 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
 import org.jsoup.parser.Parser;
-import org.jsoup.select.Elements;
 
-import bibtex.domain.GreyLiterature;
-import bibtex.domain.MastersDissertation;
-import bibtex.domain.PhdThesis;
-import bibtex.domain.UndergradMonograph;
+import util.CvExtractionCache;
+import util.EntrySequencer;
 
 public class ExtractProductionFromLattesXml {
 	/** Path to the XML file that contains the Lattes CV to be parsed. */
@@ -33,6 +35,9 @@ public class ExtractProductionFromLattesXml {
 	/** Properties object that holds all the configuration. */
 	private static final Properties CONFIG = new Properties();
 
+	/** Extraction plan, compiled from the configuration. */
+	private static LattesExtractionPlan plan;
+
 	/** Set of Lattes production entries. */
 	private static final SortedSet<LattesProduction> entries = new TreeSet<>();
 
@@ -40,6 +45,7 @@ public class ExtractProductionFromLattesXml {
 	public static void main(String[] args) throws Exception {
 		// Loads the properties file.
 		CONFIG.load(new FileInputStream(new File(CONFIG_FILE_PATH)));
+		plan = new LattesExtractionPlan(CONFIG);
 
 		// References the folder where all Lattes XML files should be located.
 		File lattesXmlFolder = new File(LATTES_XML_FOLDER_PATH);
@@ -47,31 +53,65 @@ public class ExtractProductionFromLattesXml {
 		// Creates file descriptors for the output files.
 		File outputFile = new File(CONFIG.getProperty("outputFile"));
 
-		// Processes each file in the Lattes XML folder.
-		for (File lattesXmlFile : lattesXmlFolder.listFiles()) {
-			System.out.printf("***** PROCESSING: %s *****%n%n", lattesXmlFile.getName());
-
-			// Reads the entire contents of the XML file.
-			StringBuilder xmlContents = new StringBuilder();
-			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(lattesXmlFile), CONFIG.getProperty("encoding")))) {
-				String line = reader.readLine();
-				while (line != null) {
-					xmlContents.append(line).append('\n');
-					line = reader.readLine();
-				}
+		// Processes each file in the Lattes XML folder, in order of name, on a pool of worker threads. The results of each
+		// file are printed and placed on the global collection by the main thread, in that same order.
+		File[] lattesXmlFiles = lattesXmlFolder.listFiles();
+		Arrays.sort(lattesXmlFiles);
+		int threads = Integer.parseInt(CONFIG.getProperty("threads", "0"));
+		if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+		long start = System.currentTimeMillis();
+
+		// If a cache file is configured, only the CVs that changed since the last run are processed.
+		String cacheFileName = CONFIG.getProperty("cacheFile", "").trim();
+		final CvExtractionCache<CvExtraction> cache = cacheFileName.isEmpty() ? null : new CvExtractionCache<CvExtraction>(new File(cacheFileName), CONFIG);
+		try (EntrySequencer<CvExtraction> sequencer = new EntrySequencer<>(threads, new EntrySequencer.Sink<CvExtraction>() {
+			@Override
+			public void accept(CvExtraction extraction) {
+				extraction.finish();
 			}
-
-			// Parses the XML file with the Lattes CV using Jsoup.
-			Document doc = Jsoup.parse(xmlContents.toString(), "", Parser.xmlParser());
-
-			// Extracts the entries from the CV, placing them on the global collections.
-			extractEntries(doc);
-			System.out.println("\n\n");
+		})) {
+			for (final File lattesXmlFile : lattesXmlFiles) sequencer.submit(new Callable<CvExtraction>() {
+				@Override
+				public CvExtraction call() throws Exception {
+					CvExtraction extraction = (cache == null) ? null : cache.get(lattesXmlFile);
+					if (extraction != null) extraction.cached = true;
+					else {
+						extraction = extractEntries(lattesXmlFile);
+						if (cache != null) cache.put(lattesXmlFile, extraction);
+					}
+					return extraction;
+				}
+			});
+		}
+		System.out.printf("Processed %d CV(s) in %d ms using %d thread(s).%n", lattesXmlFiles.length, System.currentTimeMillis() - start, threads);
+		if (cache != null) {
+			cache.save();
+			System.out.printf("Cache: %s.%n", cache.getStatistics());
 		}
 
 		// Writes the CSV file with the result.
 		writeOutput(outputFile, entries);
 
+		// Collapses the publications co-authored by members of the program, writing them to another CSV file and
+		// producing the statistics of the program from them.
+		String aggregatedFileName = CONFIG.getProperty("aggregatedOutputFile", "").trim();
+		String statisticsPrefix = CONFIG.getProperty("statisticsOutputPrefix", "").trim();
+		if (!aggregatedFileName.isEmpty() || !statisticsPrefix.isEmpty()) {
+			ProductionAggregator aggregator = new ProductionAggregator();
+			aggregator.addAll(entries);
+			List<AggregatedProduction> productions = aggregator.getProductions();
+			System.out.printf("Aggregated %d entries into %d publications (%d co-authored by more than one member).%n", aggregator.getEntryCount(), aggregator.size(), aggregator.getCoauthoredCount());
+			if (!aggregatedFileName.isEmpty()) writeAggregatedOutput(new File(aggregatedFileName), productions);
+
+			if (!statisticsPrefix.isEmpty()) {
+				long statisticsStart = System.currentTimeMillis();
+				ProductionStatistics statistics = new ProductionStatistics();
+				for (AggregatedProduction production : productions) statistics.add(production);
+				statistics.writeReports(statisticsPrefix, Integer.parseInt(CONFIG.getProperty("statisticsTopVenues", "20")));
+				System.out.printf("Statistics of %d publications written to %s-*.csv in %d ms.%n", statistics.size(), statisticsPrefix, System.currentTimeMillis() - statisticsStart);
+			}
+		}
+
 		System.out.println("\nDone!");
 	}
 
@@ -92,86 +132,95 @@ public class ExtractProductionFromLattesXml {
 	}
 
 	/**
-	 * TODO: document this method.
+	 * Writes the aggregated publications to the output file, in the same format as the entries.
 	 * 
-	 * @param doc
+	 * @param outputFile
+	 * @param productions
+	 * @throws FileNotFoundException
 	 */
-	private static void extractEntries(Document doc) {
-		// Extracts the name of the researcher first.
-		Element generalData = doc.select(CONFIG.getProperty("jsoupSelectorGeneralData")).first();
-		String researcher = generalData.attr(CONFIG.getProperty("generalDataName"));
-		System.out.printf("Parsing Lattes CV of: %s%n", researcher);
-		
-		// Navigates to the nodes that contains all bibliographic production (supports multiple, althoug we expect a single one).
-		Elements bibliographyLists = doc.select(CONFIG.getProperty("jsoupSelectorBibliographic"));
-
-		// Goes through all the bibliography.
-		for (Element elem : bibliographyLists) {
-			// Extracts conference, journal, books & chapters, magazine and others.
-			extractEntries(researcher, elem, "Events");
-			extractEntries(researcher, elem, "Journals");
-			extractEntries(researcher, elem, "Books");
-			extractEntries(researcher, elem, "Chapters");
-			extractEntries(researcher, elem, "Magazines");
-			extractEntries(researcher, elem, "Others");
+	private static void writeAggregatedOutput(File outputFile, List<AggregatedProduction> productions) throws FileNotFoundException {
+		try (PrintWriter out = new PrintWriter(outputFile)) {
+			out.println(CONFIG.getProperty("aggregatedOutputHeader"));
+			for (AggregatedProduction production : productions) {
+				out.println(production.toCSV());
+			}
 		}
 	}
 
 	/**
-	 * TODO: document this method.
-	 * @param researcher
-	 * @param element
-	 * @param name
+	 * Reads and parses a Lattes XML file, extracting its entries with the compiled plan. Doesn't change the global
+	 * collection, so files can be processed by different threads.
+	 * 
+	 * @param lattesXmlFile
+	 * @return
+	 * @throws IOException
 	 */
-	private static void extractEntries(String researcher, Element element, String name) {
-		// Gets the structural information from the configuration.
-		int startYear = Integer.parseInt(CONFIG.getProperty("startYear"));
-		int endYear = Integer.parseInt(CONFIG.getProperty("endYear"));
-		String selector = CONFIG.getProperty("jsoupSelectorBibliographic" + name);
-		String selectorGeneral = CONFIG.getProperty("jsoupSelectorBibliographic" + name + "General");
-		String selectorDetails = CONFIG.getProperty("jsoupSelectorBibliographic" + name + "Details");
-		String selectorAuthors = CONFIG.getProperty("jsoupSelectorBibliographic" + name + "Authors");
-		String baseType = CONFIG.getProperty("bibliographic" + name + "BaseType");
-		String attrType = CONFIG.getProperty("bibliographic" + name + "Type");
-		String attrYear = CONFIG.getProperty("bibliographic" + name + "Year");
-		String attrTitle = CONFIG.getProperty("bibliographic" + name + "Title");
-		String[] attrVenue = CONFIG.getProperty("bibliographic" + name + "Venue").split("\\s*\\|\\s*");
-		String attrAuthors = CONFIG.getProperty("bibliographic" + name + "Authors");
-		
-		// Goes through all entries.
-		Elements elems = element.select(selector);
-		for (Element elem : elems) {
-			// Checks if the year is within the desired range. 
-			Element general = elem.select(selectorGeneral).first();
-			int year = parseYear(general.attr(attrYear));
-			if ((startYear == 0 || startYear <= year) && (endYear == 0 || endYear >= year)) {
-				// Extracts the information needed.
-				String type = baseType +  " / " + general.attr(attrType);
-				String title = general.attr(attrTitle);
-				
-				// Venue can be split into more than one attribute.
-				StringBuilder venues = new StringBuilder();
-				for (String attr : attrVenue) venues.append(elem.select(selectorDetails).first().attr(attr)).append(" / ");
-				venues.deleteCharAt(venues.length() - 1);
-				venues.deleteCharAt(venues.length() - 1);
-				venues.deleteCharAt(venues.length() - 1);				
-				
-				// Authors can be multiple.
-				StringBuilder authors = new StringBuilder();
-				for (Element author : elem.select(selectorAuthors)) authors.append(author.attr(attrAuthors)).append(", ");
-				authors.deleteCharAt(authors.length() - 1);
-				authors.deleteCharAt(authors.length() - 1);
-				
-				// Creates a production entry and adds to the set.
-				entries.add(new LattesProduction(type, researcher, year, title, venues.toString(), authors.toString()));
+	private static CvExtraction extractEntries(File lattesXmlFile) throws IOException {
+		long start = System.currentTimeMillis();
+
+		// Reads the entire contents of the XML file.
+		StringBuilder xmlContents = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(lattesXmlFile), CONFIG.getProperty("encoding")))) {
+			String line = reader.readLine();
+			while (line != null) {
+				xmlContents.append(line).append('\n');
+				line = reader.readLine();
 			}
 		}
+
+		// Parses the XML file with the Lattes CV using Jsoup.
+		Document doc = Jsoup.parse(xmlContents.toString(), "", Parser.xmlParser());
+
+		// Extracts the name of the researcher first, then the entries, using the compiled plan.
+		String researcher = plan.extractResearcher(doc);
+		CvExtraction extraction = new CvExtraction(lattesXmlFile, researcher);
+		plan.extractEntries(researcher, doc, extraction.entries);
+
+		extraction.elapsed = System.currentTimeMillis() - start;
+		return extraction;
 	}
-	
-	private static int parseYear(String yearData) {
-		if (yearData.matches("\\d{4}")) return Integer.parseInt(yearData);
-		String[] data = yearData.split(" ");
-		for (int i = 0; i < data.length; i++) if (data[i].matches("\\d{4}")) return Integer.parseInt(data[i]);
-		return 0;
+
+	/**
+	 * The entries extracted from a Lattes XML file, to be printed and placed on the global collection once all the files
+	 * before it have been. Stored in the cache for the next runs.
+	 *
+	 * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+	 * @version 1.0
+	 */
+	private static class CvExtraction implements Serializable {
+		/** Serialization version. */
+		private static final long serialVersionUID = 1L;
+
+
+		/** The Lattes XML file. */
+		private File file;
+
+		/** Name of the researcher. */
+		private String researcher;
+
+		/** Entries extracted from the file. */
+		private List<LattesProduction> entries = new ArrayList<>();
+
+		/** Time taken to read, parse and extract the file, in milliseconds. */
+		private long elapsed;
+
+		/** If the entries have been taken from the cache in this run. */
+		private transient boolean cached;
+
+		/** Constructor. */
+		CvExtraction(File file, String researcher) {
+			this.file = file;
+			this.researcher = researcher;
+		}
+
+		/** Prints what has been extracted and places the entries on the global collection. */
+		void finish() {
+			System.out.printf("***** PROCESSING: %s *****%n%n", file.getName());
+			System.out.printf("Parsing Lattes CV of: %s%n", researcher);
+			if (cached) System.out.printf("Unchanged: %d entries taken from the cache.%n", entries.size());
+			else System.out.printf("Extracted %d entries in %d ms.%n", entries.size(), elapsed);
+			ExtractProductionFromLattesXml.entries.addAll(entries);
+			System.out.println("\n\n");
+		}
 	}
 }
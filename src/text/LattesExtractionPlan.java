@@ -0,0 +1,140 @@
+package text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+/**
+ * The extraction of the production from Lattes CVs, compiled from the configuration (production-from-lattes.properties)
+ * once for all the CVs: the Jsoup selectors are read and trimmed (the properties file has trailing spaces after some of
+ * them) and the attribute lists are split, so extracting each CV doesn't go through the configuration again. Plans are
+ * not changed after compiled, so they can be shared by threads.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+class LattesExtractionPlan {
+	/** Names of the kinds of production (conference, journal, books & chapters, magazine and others), in order. */
+	private static final String[] PRODUCTION_NAMES = { "Events", "Journals", "Books", "Chapters", "Magazines", "Others" };
+
+	/** Separator of the attributes that compose the venue. */
+	private static final Pattern VENUE_SEPARATOR = Pattern.compile("\\s*\\|\\s*");
+
+	/** Pattern of a year. */
+	private static final Pattern YEAR_PATTERN = Pattern.compile("\\d{4}");
+
+	/** Selectors of the general data of the researcher and of the bibliographic production lists. */
+	private String generalData, bibliographic;
+
+	/** Attribute with the name of the researcher. */
+	private String generalDataName;
+
+	/** Period of interest. */
+	private int startYear, endYear;
+
+	/** Plans of the kinds of production, in order. */
+	private List<ProductionPlan> productions = new ArrayList<>();
+
+	/** Compiles the plan from the configuration. */
+	LattesExtractionPlan(Properties config) {
+		generalData = selector(config, "jsoupSelectorGeneralData");
+		bibliographic = selector(config, "jsoupSelectorBibliographic");
+		generalDataName = config.getProperty("generalDataName");
+		startYear = Integer.parseInt(config.getProperty("startYear"));
+		endYear = Integer.parseInt(config.getProperty("endYear"));
+		for (String name : PRODUCTION_NAMES) productions.add(new ProductionPlan(config, name));
+	}
+
+	/** Extracts the name of the researcher. */
+	String extractResearcher(Document doc) {
+		Element general = doc.select(generalData).first();
+		return general.attr(generalDataName);
+	}
+
+	/** Extracts the entries of the researcher's CV, adding them to the list. */
+	void extractEntries(String researcher, Document doc, List<LattesProduction> entries) {
+		// Goes through all the bibliography (supports multiple lists, although we expect a single one).
+		for (Element elem : doc.select(bibliographic))
+			for (ProductionPlan production : productions) production.extractEntries(researcher, elem, entries);
+	}
+
+	/** Reads a Jsoup selector from the configuration, without surrounding spaces. */
+	private static String selector(Properties config, String key) {
+		return config.getProperty(key).trim();
+	}
+
+	/** Parses the year from its data, which might contain other words. Returns 0 if it has no year. */
+	private static int parseYear(String yearData) {
+		if (YEAR_PATTERN.matcher(yearData).matches()) return Integer.parseInt(yearData);
+		String[] data = yearData.split(" ");
+		for (int i = 0; i < data.length; i++) if (YEAR_PATTERN.matcher(data[i]).matches()) return Integer.parseInt(data[i]);
+		return 0;
+	}
+
+	/**
+	 * The selectors and attributes of a kind of production (e.g., "Events" for the properties
+	 * jsoupSelectorBibliographicEvents, bibliographicEventsTitle, etc.).
+	 *
+	 * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+	 * @version 1.0
+	 */
+	private class ProductionPlan {
+		/** Selectors of the entries and of their general data, details and authors. */
+		private String selector, selectorGeneral, selectorDetails, selectorAuthors;
+
+		/** Base type of the entries and attributes with their information. */
+		private String baseType, attrType, attrYear, attrTitle, attrAuthors;
+
+		/** Attributes that compose the venue. */
+		private String[] attrVenue;
+
+		/** Constructor. */
+		ProductionPlan(Properties config, String name) {
+			selector = selector(config, "jsoupSelectorBibliographic" + name);
+			selectorGeneral = selector(config, "jsoupSelectorBibliographic" + name + "General");
+			selectorDetails = selector(config, "jsoupSelectorBibliographic" + name + "Details");
+			selectorAuthors = selector(config, "jsoupSelectorBibliographic" + name + "Authors");
+			baseType = config.getProperty("bibliographic" + name + "BaseType");
+			attrType = config.getProperty("bibliographic" + name + "Type");
+			attrYear = config.getProperty("bibliographic" + name + "Year");
+			attrTitle = config.getProperty("bibliographic" + name + "Title");
+			attrVenue = VENUE_SEPARATOR.split(config.getProperty("bibliographic" + name + "Venue"));
+			attrAuthors = config.getProperty("bibliographic" + name + "Authors");
+		}
+
+		/** Extracts the entries of this kind under the given element, adding them to the list. */
+		void extractEntries(String researcher, Element element, List<LattesProduction> entries) {
+			// Goes through all entries.
+			Elements elems = element.select(selector);
+			for (Element elem : elems) {
+				// Checks if the year is within the desired range.
+				Element general = elem.select(selectorGeneral).first();
+				int year = parseYear(general.attr(attrYear));
+				if ((startYear == 0 || startYear <= year) && (endYear == 0 || endYear >= year)) {
+					// Extracts the information needed.
+					String type = baseType + " / " + general.attr(attrType);
+					String title = general.attr(attrTitle);
+
+					// Venue can be split into more than one attribute.
+					Element details = elem.select(selectorDetails).first();
+					StringBuilder venues = new StringBuilder();
+					for (String attr : attrVenue) venues.append(details.attr(attr)).append(" / ");
+					venues.setLength(venues.length() - 3);
+
+					// Authors can be multiple.
+					StringBuilder authors = new StringBuilder();
+					for (Element author : elem.select(selectorAuthors)) authors.append(author.attr(attrAuthors)).append(", ");
+					authors.setLength(authors.length() - 2);
+
+					// Creates a production entry and adds to the list.
+					entries.add(new LattesProduction(type, researcher, year, title, venues.toString(), authors.toString()));
+				}
+			}
+		}
+	}
+}
@@ -1,12 +1,17 @@
 package text;
 
+import java.io.Serializable;
+
 /**
  * TODO: document this type.
  *
  * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
  * @version 1.0
  */
-public class LattesProduction implements Comparable<LattesProduction> {
+public class LattesProduction implements Comparable<LattesProduction>, Serializable {
+	/** Serialization version. */
+	private static final long serialVersionUID = 1L;
+
 	/** TODO: document this field. */
 	private String type;
 	
@@ -10,11 +10,12 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import web.HttpCache;
+
 /**
  * Performs HTML scrapping at the website of UFES' Post-graduate Program in Computer Science looking for past students
  * (alumni) from a certain group of professors, generating an HTML output with the information from the students to be
@@ -81,6 +82,9 @@ public class ParseUfesAlumniTable {
 
 	private static String baseUrl;
 
+	/** Shared HTTP cache, so running the script again doesn't download (nor wait for) the pages again. */
+	private static HttpCache cache;
+
 	private static final Map<String, String> homepageMap = new HashMap<>();
 
 	private static final Set<String> supervisorFilter = new HashSet<>();
@@ -103,12 +107,17 @@ public class ParseUfesAlumniTable {
 			}
 		}
 
-		// Parses all alumni.
-		int count = parseAlumni();
-		System.out.printf("%nParsed %d alumni from the main table. Now checking details and filtering by supervisor...%n%n", count);
+		try (HttpCache httpCache = new HttpCache()) {
+			cache = httpCache;
 
-		// Parses details from the alumni, also filtering by supervisor.
-		parseDetails();
+			// Parses all alumni.
+			int count = parseAlumni();
+			System.out.printf("%nParsed %d alumni from the main table. Now checking details and filtering by supervisor...%n%n", count);
+
+			// Parses details from the alumni, also filtering by supervisor.
+			parseDetails();
+			System.out.printf("%nHTTP cache: %s.%n", cache.getStatistics());
+		}
 
 		// Writes the HTML output for the website.
 		writeHtmlOutput();
@@ -132,10 +141,11 @@ public class ParseUfesAlumniTable {
 	private static void parseDetails() throws Exception {
 		// Processes all alumni.
 		for (Alumnus alumnus : alumni) {
-			// Opens the detail page of the alumnus. Sleeps for a while first to avoid spamming the server.
-			Thread.sleep(SLEEP_TIME);
+			// Opens the detail page of the alumnus. Sleeps for a while first to avoid spamming the server, unless the page is
+			// in the cache.
+			if (!cache.isFresh(alumnus.getUrl())) Thread.sleep(SLEEP_TIME);
 			System.out.printf("Checking details for %s... ", alumnus);
-			Document doc = Jsoup.connect(alumnus.getUrl()).timeout(TIMEOUT_TIME).get();
+			Document doc = cache.get(alumnus.getUrl(), TIMEOUT_TIME);
 
 			// Obtains the tables in the document and looks for the products table.
 			Elements tables = doc.select(SELECTOR_TABLE);
@@ -178,7 +188,7 @@ public class ParseUfesAlumniTable {
 				}
 				else {
 					// Opens the detail page of the alumnus' defended work.
-					doc = Jsoup.connect(workUri).timeout(TIMEOUT_TIME).get();
+					doc = cache.get(workUri, TIMEOUT_TIME);
 
 					// Looks for the first table in the document, where the names of the supervisors are.
 					table = doc.select(SELECTOR_TABLE).first();
@@ -229,7 +239,7 @@ public class ParseUfesAlumniTable {
 		while (url != null) {
 			// Opens the page and extracts the HTML DOM structure into Jsoup.
 			System.out.printf("Parsing %s...%n", url);
-			Document doc = Jsoup.connect(url).timeout(TIMEOUT_TIME).get();
+			Document doc = cache.get(url, TIMEOUT_TIME);
 			url = null;
 
 			// Looks for the first table in the document, where the names of the students are supposed to be.
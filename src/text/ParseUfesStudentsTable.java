@@ -10,11 +10,12 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import web.HttpCache;
+
 /**
  * Performs HTML scrapping at the website of UFES' Post-graduate Program in Computer Science looking for current
  * students from a certain group of professors, generating an HTML output with the information from the students to be
@@ -120,54 +121,56 @@ public class ParseUfesStudentsTable {
 		// Extracts the base address of the URL.
 		String baseUrl = START_URL.substring(0, START_URL.indexOf('/', 7));
 
-		// Processes all pages, following "next" links.
+		// Processes all pages, following "next" links. Pages are kept in the shared HTTP cache.
 		String url = START_URL;
-		while (url != null) {
-			// Opens the page and extracts the HTML DOM structure into Jsoup.
-			Document doc = Jsoup.connect(url).timeout(10000).get();
-			url = null;
-
-			// Looks for the first table in the document, where the names of the students are supposed to be.
-			Element table = doc.select(SELECTOR_TABLE).first();
-
-			// Extracts the rows from the table. Goes through all of them.
-			Elements rows = table.select(SELECTOR_ROW);
-			for (Element row : rows) {
-				StringBuilder builder = new StringBuilder();
-
-				// Extracts the columns from the row.
-				Elements columns = row.select(SELECTOR_COLUMN);
-
-				// Only reads the columns that have useful information for us.
-				if (!columns.isEmpty()) {
-					for (int idx : COLUMNS_TO_READ)
-						builder.append(columns.get(idx).text()).append(CSV_SEPARATOR);
-
-					// Also extracts the link to the detail page of the alumni.
-					Element cell = columns.get(COLUMN_DETAIL_LINK);
-					String link = cell.select(SELECTOR_DETAIL_LINK).attr(ATTRIBUTE_LINK);
-					builder.append(link).append(CSV_SEPARATOR);
-
-					// Checks if we should filter by supervisor.
-					String supervisor = columns.get(COLUMN_SUPERVISOR).text();
-					if (supervisorFilter.isEmpty() || supervisorFilter.contains(supervisor)) {
-						// Outputs the information in CSV.
-						System.out.println(builder);
-
-						// Saves the information in the student map.
-						String student = columns.get(COLUMN_STUDENT).text();
-						studentMap.put(student, supervisor);
-
-						// If the student doesn't have a homepage address yet, add her to the homepageMap.
-						if (!homepageMap.containsKey(student)) homepageMap.put(student, baseUrl + link);
+		try (HttpCache cache = new HttpCache()) {
+			while (url != null) {
+				// Opens the page and extracts the HTML DOM structure into Jsoup.
+				Document doc = cache.get(url, 10000);
+				url = null;
+
+				// Looks for the first table in the document, where the names of the students are supposed to be.
+				Element table = doc.select(SELECTOR_TABLE).first();
+
+				// Extracts the rows from the table. Goes through all of them.
+				Elements rows = table.select(SELECTOR_ROW);
+				for (Element row : rows) {
+					StringBuilder builder = new StringBuilder();
+
+					// Extracts the columns from the row.
+					Elements columns = row.select(SELECTOR_COLUMN);
+
+					// Only reads the columns that have useful information for us.
+					if (!columns.isEmpty()) {
+						for (int idx : COLUMNS_TO_READ)
+							builder.append(columns.get(idx).text()).append(CSV_SEPARATOR);
+
+						// Also extracts the link to the detail page of the alumni.
+						Element cell = columns.get(COLUMN_DETAIL_LINK);
+						String link = cell.select(SELECTOR_DETAIL_LINK).attr(ATTRIBUTE_LINK);
+						builder.append(link).append(CSV_SEPARATOR);
+
+						// Checks if we should filter by supervisor.
+						String supervisor = columns.get(COLUMN_SUPERVISOR).text();
+						if (supervisorFilter.isEmpty() || supervisorFilter.contains(supervisor)) {
+							// Outputs the information in CSV.
+							System.out.println(builder);
+
+							// Saves the information in the student map.
+							String student = columns.get(COLUMN_STUDENT).text();
+							studentMap.put(student, supervisor);
+
+							// If the student doesn't have a homepage address yet, add her to the homepageMap.
+							if (!homepageMap.containsKey(student)) homepageMap.put(student, baseUrl + link);
+						}
 					}
 				}
-			}
 
-			// Checks if there's a next page.
-			Elements nextLinks = doc.select(SELECTOR_NEXT_LINK);
-			if (!nextLinks.isEmpty()) url = nextLinks.first().attr(ATTRIBUTE_LINK);
-			if (url != null && url.startsWith("/")) url = baseUrl + url;
+				// Checks if there's a next page.
+				Elements nextLinks = doc.select(SELECTOR_NEXT_LINK);
+				if (!nextLinks.isEmpty()) url = nextLinks.first().attr(ATTRIBUTE_LINK);
+				if (url != null && url.startsWith("/")) url = baseUrl + url;
+			}
 		}
 
 	}
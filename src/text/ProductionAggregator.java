@@ -0,0 +1,76 @@
+package text;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Collapses the Lattes production entries of the same publication in the CVs of different members of the program into
+ * a single AggregatedProduction. Entries are indexed by a key with their year and their normalized title and venue (in
+ * lower case, without accents, punctuation and repeated spaces), so each entry is aggregated in constant time and the
+ * whole production in linear time.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class ProductionAggregator {
+	/** Pattern of the diacritical marks, separated from the letters by the normalizer. */
+	private static final Pattern MARKS_PATTERN = Pattern.compile("\\p{M}");
+
+	/** Pattern of sequences of characters that are not letters or digits. */
+	private static final Pattern NON_ALPHANUMERIC_PATTERN = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/** Aggregated publications, indexed by their keys. */
+	private Map<String, AggregatedProduction> productions = new HashMap<>();
+
+	/** Number of entries aggregated. */
+	private int entryCount;
+
+	/** Adds an entry, collapsing it with the publication that has the same year, title and venue, if there is one. */
+	public void add(LattesProduction entry) {
+		entryCount++;
+		String key = entry.getYear() + "|" + normalize(entry.getTitle()) + "|" + normalize(entry.getVenue());
+		AggregatedProduction production = productions.get(key);
+		if (production == null) productions.put(key, new AggregatedProduction(entry));
+		else production.getMembers().add(entry.getResearcher());
+	}
+
+	/** Adds all the entries. */
+	public void addAll(Iterable<LattesProduction> entries) {
+		for (LattesProduction entry : entries) add(entry);
+	}
+
+	/** Returns the aggregated publications, sorted by year, title and venue. */
+	public List<AggregatedProduction> getProductions() {
+		List<AggregatedProduction> list = new ArrayList<>(productions.values());
+		Collections.sort(list);
+		return list;
+	}
+
+	/** Number of entries aggregated. */
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	/** Number of publications, after aggregation. */
+	public int size() {
+		return productions.size();
+	}
+
+	/** Number of publications that are in the CVs of more than one member. */
+	public int getCoauthoredCount() {
+		int count = 0;
+		for (AggregatedProduction production : productions.values()) if (production.getMembers().size() > 1) count++;
+		return count;
+	}
+
+	/** Normalizes a string in lower case, without accents, punctuation and repeated spaces. */
+	static String normalize(String text) {
+		String normalized = MARKS_PATTERN.matcher(Normalizer.normalize(text.toLowerCase(), Normalizer.Form.NFD)).replaceAll("");
+		return NON_ALPHANUMERIC_PATTERN.matcher(normalized).replaceAll(" ").trim();
+	}
+}
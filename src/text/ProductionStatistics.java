@@ -0,0 +1,257 @@
+package text;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Statistics of the production of a program, computed in a single pass over its publications (see
+ * ProductionAggregator): number of publications per member and year, per type and year and per venue. Names are
+ * interned into int IDs and the counts are kept in maps of int keys (the ID combined with the year) to int values, so
+ * no objects are created per publication. Only the top venues are kept when the reports are written.
+ *
+ * The reports are written as CSV files whose names start with a given prefix: [prefix]-members.csv, [prefix]-types.csv
+ * and [prefix]-venues.csv.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class ProductionStatistics {
+	/** Number of bits of the keys used by the year. IDs are stored in the remaining bits. */
+	private static final int YEAR_BITS = 16;
+
+	/** Mask that extracts the year from a key. */
+	private static final int YEAR_MASK = (1 << YEAR_BITS) - 1;
+
+	/** Interned names of members, types and venues (by normalized name, keeping the first name seen). */
+	private StringIndex members = new StringIndex(), types = new StringIndex(), venues = new StringIndex();
+
+	/** Number of publications per member and year, type and year, year and venue. */
+	private IntCountMap memberYearCounts = new IntCountMap(), typeYearCounts = new IntCountMap(), yearCounts = new IntCountMap(), venueCounts = new IntCountMap();
+
+	/** Number of publications. */
+	private int count;
+
+	/** Counts a publication, once for the program and once for each of its members. */
+	public void add(AggregatedProduction production) {
+		int year = production.getYear() & YEAR_MASK;
+		count++;
+		yearCounts.increment(year);
+		typeYearCounts.increment(key(types.intern(production.getType(), production.getType()), year));
+		venueCounts.increment(venues.intern(ProductionAggregator.normalize(production.getVenue()), production.getVenue()));
+		for (String member : production.getMembers()) memberYearCounts.increment(key(members.intern(member, member), year));
+	}
+
+	/** Number of publications. */
+	public int size() {
+		return count;
+	}
+
+	/** Writes the reports: publications per member and year, per type and year and the top venues. */
+	public void writeReports(String prefix, int topVenues) throws FileNotFoundException {
+		int[] years = yearCounts.keys();
+		Arrays.sort(years);
+		writeTable(new File(prefix + "-members.csv"), "Membro do PPGI", members, memberYearCounts, years, false);
+		writeTable(new File(prefix + "-types.csv"), "Tipo", types, typeYearCounts, years, true);
+
+		try (PrintWriter out = new PrintWriter(new File(prefix + "-venues.csv"))) {
+			out.println("\"Veículo\",\"Publicações\"");
+			for (int id : topVenues(topVenues)) out.printf("\"%s\",\"%d\"%n", venues.getName(id), venueCounts.get(id));
+		}
+	}
+
+	/** Writes a table with a line per name (sorted) and a column per year, plus the totals of each line and (optionally) of each year. */
+	private void writeTable(File file, String title, StringIndex index, IntCountMap counts, int[] years, boolean yearTotals) throws FileNotFoundException {
+		try (PrintWriter out = new PrintWriter(file)) {
+			StringBuilder line = new StringBuilder();
+			line.append('"').append(title).append('"');
+			for (int year : years) line.append(",\"").append(year).append('"');
+			out.println(line.append(",\"Total\""));
+
+			for (int id : index.sortedIds()) {
+				line.setLength(0);
+				line.append('"').append(index.getName(id)).append('"');
+				int total = 0;
+				for (int year : years) {
+					int value = counts.get(key(id, year));
+					line.append(",\"").append(value).append('"');
+					total += value;
+				}
+				out.println(line.append(",\"").append(total).append('"'));
+			}
+
+			if (yearTotals) {
+				line.setLength(0);
+				line.append("\"Total\"");
+				for (int year : years) line.append(",\"").append(yearCounts.get(year)).append('"');
+				out.println(line.append(",\"").append(count).append('"'));
+			}
+		}
+	}
+
+	/** Selects the venues with most publications (ties broken by name), keeping only the top ones sorted as the venues are visited. */
+	private int[] topVenues(int k) {
+		int[] top = new int[Math.min(k, venues.size())];
+		int size = 0;
+		for (int id = 0; id < venues.size(); id++) {
+			if (size == top.length && (size == 0 || !isBefore(id, top[size - 1]))) continue;
+
+			// Inserts the venue in its position, dropping the last one if the list is full.
+			int pos = (size < top.length) ? size++ : size - 1;
+			while (pos > 0 && isBefore(id, top[pos - 1])) {
+				top[pos] = top[pos - 1];
+				pos--;
+			}
+			top[pos] = id;
+		}
+		return top;
+	}
+
+	/** Checks if a venue comes before another in the ranking. */
+	private boolean isBefore(int id, int other) {
+		int cmp = Integer.compare(venueCounts.get(other), venueCounts.get(id));
+		return (cmp != 0) ? cmp < 0 : venues.getName(id).compareTo(venues.getName(other)) < 0;
+	}
+
+	/** Spreads the bits of a hash code, so keys that differ only in the high bits (e.g., the IDs) fall in different slots. */
+	private static int mix(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/** Combines an ID and a year into a key. */
+	private static int key(int id, int year) {
+		return (id << YEAR_BITS) | year;
+	}
+
+	/**
+	 * Map of int keys to int counts, with open addressing (linear probing). Counts are always positive, so a zero count
+	 * marks an empty slot.
+	 *
+	 * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+	 * @version 1.0
+	 */
+	static class IntCountMap {
+		private int[] keys = new int[16];
+		private int[] counts = new int[16];
+		private int size;
+
+		/** Increments the count of a key. */
+		void increment(int key) {
+			int slot = slot(key);
+			if (counts[slot] == 0) {
+				keys[slot] = key;
+				if (++size * 2 > keys.length) {
+					counts[slot] = 1;
+					resize();
+					return;
+				}
+			}
+			counts[slot]++;
+		}
+
+		/** Returns the count of a key (0 if it has none). */
+		int get(int key) {
+			return counts[slot(key)];
+		}
+
+		/** Returns the keys with counts, in no particular order. */
+		int[] keys() {
+			int[] result = new int[size];
+			int n = 0;
+			for (int i = 0; i < keys.length; i++) if (counts[i] != 0) result[n++] = keys[i];
+			return result;
+		}
+
+		/** Finds the slot of a key: the one where it is or, if it's not in the map, the empty one where it would be. */
+		private int slot(int key) {
+			int mask = keys.length - 1, slot = mix(key) & mask;
+			while (counts[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		/** Doubles the size of the table. */
+		private void resize() {
+			int[] oldKeys = keys, oldCounts = counts;
+			keys = new int[oldKeys.length * 2];
+			counts = new int[oldCounts.length * 2];
+			for (int i = 0; i < oldKeys.length; i++) if (oldCounts[i] != 0) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+	/**
+	 * Index of strings, giving each distinct key a sequential int ID, with open addressing (linear probing). Each ID also
+	 * has a name, the one given when the key was first seen.
+	 *
+	 * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+	 * @version 1.0
+	 */
+	static class StringIndex {
+		private String[] keys = new String[16];
+		private int[] ids = new int[16];
+		private List<String> names = new ArrayList<>();
+
+		/** Returns the ID of a key, giving it the next ID (and the given name) if it's new. */
+		int intern(String key, String name) {
+			int slot = slot(key);
+			if (keys[slot] != null) return ids[slot];
+			keys[slot] = key;
+			ids[slot] = names.size();
+			names.add(name);
+			if (names.size() * 2 > keys.length) resize();
+			return names.size() - 1;
+		}
+
+		/** Returns the name of an ID. */
+		String getName(int id) {
+			return names.get(id);
+		}
+
+		/** Number of IDs. */
+		int size() {
+			return names.size();
+		}
+
+		/** Returns the IDs sorted by name. */
+		List<Integer> sortedIds() {
+			List<Integer> sorted = new ArrayList<>(names.size());
+			for (int id = 0; id < names.size(); id++) sorted.add(id);
+			Collections.sort(sorted, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return names.get(a).compareTo(names.get(b));
+				}
+			});
+			return sorted;
+		}
+
+		/** Finds the slot of a key: the one where it is or, if it's not in the index, the empty one where it would be. */
+		private int slot(String key) {
+			int mask = keys.length - 1, slot = mix(key.hashCode()) & mask;
+			while (keys[slot] != null && !keys[slot].equals(key)) slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		/** Doubles the size of the table. */
+		private void resize() {
+			String[] oldKeys = keys;
+			int[] oldIds = ids;
+			keys = new String[oldKeys.length * 2];
+			ids = new int[oldIds.length * 2];
+			for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != null) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				ids[slot] = oldIds[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * On-disk cache of what has been extracted from each file of a folder of Lattes CVs (e.g., by
+ * ExtractBibtexFromLattesXml and ExtractProductionFromLattesXml), so running an extractor again only reads the CVs
+ * that changed since the last run.
+ *
+ * Each file is fingerprinted by its size, last modification time and the SHA-1 hash of its contents. If the size and
+ * time are the same, the cached result is used without reading the file; otherwise, the file is hashed and the result
+ * is used only if the contents are the same (e.g., the file has just been copied again). Results are stored with Java
+ * serialization, together with a hash of the configuration of the extractor: if the configuration changes, the whole
+ * cache is discarded. Only the files used in a run are kept when the cache is saved, so removed CVs are forgotten.
+ *
+ * Methods can be called by different threads.
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class CvExtractionCache<T extends Serializable> {
+	/** The cache file. */
+	private File file;
+
+	/** Hash of the configuration of the extractor. */
+	private String configHash;
+
+	/** Entries read from the cache file, indexed by file name. */
+	private Map<String, Entry<T>> previous = new HashMap<>();
+
+	/** Entries used or added in this run, indexed by file name. */
+	private Map<String, Entry<T>> current = new HashMap<>();
+
+	/** Number of results used without reading the file. */
+	private int hits;
+
+	/** Number of results used after hashing the file. */
+	private int rehashed;
+
+	/** Number of results added. */
+	private int misses;
+
+	/** Constructor. Reads the cache file, if it exists and was written with the same configuration. */
+	@SuppressWarnings("unchecked")
+	public CvExtractionCache(File file, Properties config) {
+		this.file = file;
+		this.configHash = hash(config);
+		if (file.exists()) try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (configHash.equals(in.readObject())) previous = (Map<String, Entry<T>>) in.readObject();
+			else System.out.printf("The configuration has changed since the cache was written. Ignoring cache file: %s%n", file);
+		}
+		catch (IOException | ClassNotFoundException | ClassCastException e) {
+			System.out.printf("Could not read cache file: %s (%s). All files will be processed.%n", file, e);
+		}
+	}
+
+	/** Returns the cached result of a file, or null if it's not in the cache or has changed. */
+	public T get(File cvFile) throws IOException {
+		Entry<T> entry;
+		synchronized (this) {
+			entry = previous.get(cvFile.getName());
+			if (entry == null) return null;
+			if (entry.size == cvFile.length() && entry.modified == cvFile.lastModified()) {
+				hits++;
+				current.put(cvFile.getName(), entry);
+				return entry.result;
+			}
+		}
+
+		// The size or time has changed, checks the contents.
+		String hash = hash(cvFile);
+		if (!hash.equals(entry.hash)) return null;
+		Entry<T> newEntry = new Entry<>(cvFile.length(), cvFile.lastModified(), hash, entry.result);
+		synchronized (this) {
+			rehashed++;
+			current.put(cvFile.getName(), newEntry);
+		}
+		return entry.result;
+	}
+
+	/** Adds the result of a file to the cache. */
+	public void put(File cvFile, T result) throws IOException {
+		long size = cvFile.length(), modified = cvFile.lastModified();
+		Entry<T> entry = new Entry<>(size, modified, hash(cvFile), result);
+		synchronized (this) {
+			misses++;
+			current.put(cvFile.getName(), entry);
+		}
+	}
+
+	/** Writes the entries used or added in this run to the cache file. */
+	public synchronized void save() throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+		try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			out.writeObject(configHash);
+			out.writeObject(new HashMap<>(current));
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/** Produces statistics about the use of the cache. */
+	public synchronized String getStatistics() {
+		return String.format("%d file(s) from cache, %d unchanged after hashing, %d processed", hits, rehashed, misses);
+	}
+
+	/** Computes the SHA-1 hash of the configuration (its properties, sorted by name), in hexadecimal. */
+	private static String hash(Properties config) {
+		List<String> names = new ArrayList<>(config.stringPropertyNames());
+		Collections.sort(names);
+		MessageDigest digest = newDigest();
+		for (String name : names) digest.update((name + '=' + config.getProperty(name) + '\n').getBytes(StandardCharsets.UTF_8));
+		return toHex(digest.digest());
+	}
+
+	/** Computes the SHA-1 hash of the contents of a file, in hexadecimal. */
+	private static String hash(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) digest.update(buffer, 0, read);
+		}
+		return toHex(digest.digest());
+	}
+
+	/** Creates a SHA-1 message digest. */
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Converts a hash to hexadecimal. */
+	private static String toHex(byte[] hash) {
+		StringBuilder builder = new StringBuilder();
+		for (byte b : hash) builder.append(String.format("%02x", b));
+		return builder.toString();
+	}
+
+	/** The fingerprint of a file and its result. */
+	private static class Entry<T> implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private long size;
+		private long modified;
+		private String hash;
+		private T result;
+
+		Entry(long size, long modified, String hash, T result) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+			this.result = result;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processes entries (e.g., BibTeX entries or Lattes CVs) on a pool of worker threads, handing the results to a sink in
+ * the same order in which the entries were submitted. The thread that reads the entries (e.g., from a file) submits
+ * them one at a time; when too many results are pending, it waits for the oldest one and gives it to the sink before
+ * reading more entries, so memory use is bounded no matter the size of the file.
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class EntrySequencer<T> implements Closeable {
+	/** Number of results that can be pending for each worker thread. */
+	private static final int PENDING_PER_THREAD = 64;
+
+	/** Receives the results of the entries, in order. */
+	public interface Sink<T> {
+		/** Receives the result of the next entry. */
+		void accept(T result) throws IOException;
+	}
+
+	/** Worker threads. */
+	private ExecutorService pool;
+
+	/** Results of the entries submitted but not yet given to the sink, in order. */
+	private Deque<Future<T>> pending = new ArrayDeque<>();
+
+	/** Maximum number of pending results. */
+	private int maxPending;
+
+	/** Receives the results. */
+	private Sink<T> sink;
+
+	/** Constructor. */
+	public EntrySequencer(int threads, Sink<T> sink) {
+		this(threads, threads * PENDING_PER_THREAD, sink);
+	}
+
+	/** Constructor that limits the number of pending results, for tasks whose results take a lot of memory. */
+	public EntrySequencer(int threads, int maxPending, Sink<T> sink) {
+		this.pool = Executors.newFixedThreadPool(threads);
+		this.maxPending = maxPending;
+		this.sink = sink;
+	}
+
+	/** Submits the processing of an entry, giving the oldest results to the sink if too many are pending. */
+	public void submit(Callable<T> task) throws IOException {
+		pending.add(pool.submit(task));
+		while (pending.size() > maxPending) drainOldest();
+	}
+
+	/** Waits for the oldest pending result and gives it to the sink. Failures of the task are rethrown. */
+	private void drainOldest() throws IOException {
+		try {
+			sink.accept(pending.poll().get());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a BibTeX entry to be processed.");
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/** Gives the remaining results to the sink and stops the worker threads. */
+	@Override
+	public void close() throws IOException {
+		try {
+			while (!pending.isEmpty()) drainOldest();
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+}
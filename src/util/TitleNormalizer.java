@@ -0,0 +1,25 @@
+package util;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes titles (and other text) so they can be compared regardless of case, accents, punctuation and spacing. Used
+ * by the systematic mapping scripts (see sysmap.Publication) and by the BibTeX merge engine (see bibtex.BibtexMerger).
+ *
+ * @author Vitor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class TitleNormalizer {
+	/** Pattern that matches diacritical marks, removed during normalization. */
+	private static final Pattern MARKS_PATTERN = Pattern.compile("\\p{M}");
+
+	/** Pattern that matches sequences of characters that are not letters or digits, replaced during normalization. */
+	private static final Pattern NON_ALPHANUMERIC_PATTERN = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/** Normalizes a string in lower case, without accents, punctuation and repeated spaces. */
+	public static String normalize(String text) {
+		String normalized = MARKS_PATTERN.matcher(Normalizer.normalize(text.toLowerCase(), Normalizer.Form.NFD)).replaceAll("");
+		return NON_ALPHANUMERIC_PATTERN.matcher(normalized).replaceAll(" ").trim();
+	}
+}
@@ -0,0 +1,321 @@
+package web;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * On-disk cache of web pages shared by the scrapers (e.g., ParseSpringer, SpringerParser, ParseUfesAlumniTable and
+ * ParseUfesStudentsTable), so running a scraper again (after a crash or a fix in a selector) parses the pages from disk
+ * instead of downloading all of them again.
+ *
+ * Response bodies are stored in files named after the SHA-1 hash of their contents (identical pages are stored once)
+ * and a journal file maps each URL to the hash of its body, the time it was fetched and last used, and the validators
+ * sent by the server (ETag, Last-Modified). Pages fetched less than ttl milliseconds ago are served from disk without
+ * contacting the server; older ones are revalidated with a conditional request, which downloads the body again only if
+ * it has changed. When the bodies take more than maxSize bytes, the least recently used pages are evicted.
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class HttpCache implements Closeable {
+	/** Default directory of the cache, relative to the working directory. */
+	public static final String DEFAULT_DIRECTORY = "http-cache";
+
+	/** Default time during which cached pages are used without revalidation (in milliseconds): one week. */
+	public static final long DEFAULT_TTL = 7L * 24 * 60 * 60 * 1000;
+
+	/** Default maximum size of the cached bodies (in bytes): 512 MB. */
+	public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+	/** Name of the journal file, inside the cache directory. */
+	private static final String JOURNAL_FILENAME = "journal.tsv";
+
+	/** Name of the directory of the bodies, inside the cache directory. */
+	private static final String OBJECTS_DIRECTORY = "objects";
+
+	/** Hash that marks the removal of an entry in the journal. */
+	private static final String REMOVED = "-";
+
+	/** Directory of the bodies. */
+	private File objectsDir;
+
+	/** The journal file. */
+	private File journalFile;
+
+	/** Time during which cached pages are used without revalidation (in milliseconds). */
+	private long ttl;
+
+	/** Maximum size of the cached bodies (in bytes). */
+	private long maxSize;
+
+	/** Cached pages, indexed by URL. */
+	private Map<String, Entry> entries = new LinkedHashMap<>();
+
+	/** Number of entries that refer to each body, indexed by hash. */
+	private Map<String, Integer> references = new HashMap<>();
+
+	/** Total size of the cached bodies. */
+	private long size;
+
+	/** Writer that appends changes to the journal. */
+	private PrintWriter journalOut;
+
+	/** Number of pages served from disk without contacting the server. */
+	private int hits;
+
+	/** Number of pages revalidated by the server without downloading them again. */
+	private int revalidations;
+
+	/** Number of pages downloaded. */
+	private int downloads;
+
+	/** Constructor using the default directory, TTL and maximum size. */
+	public HttpCache() throws IOException {
+		this(new File(DEFAULT_DIRECTORY), DEFAULT_TTL, DEFAULT_MAX_SIZE);
+	}
+
+	/** Constructor. */
+	public HttpCache(File directory, long ttl, long maxSize) throws IOException {
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+		objectsDir = new File(directory, OBJECTS_DIRECTORY);
+		journalFile = new File(directory, JOURNAL_FILENAME);
+		if (!objectsDir.isDirectory() && !objectsDir.mkdirs()) throw new IOException("Could not create cache directory " + objectsDir);
+
+		// Replays the journal (later lines replace earlier ones), ignoring entries whose bodies are missing.
+		if (journalFile.exists()) try (BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Entry entry = Entry.parse(line);
+				if (entry == null) continue;
+				if (REMOVED.equals(entry.hash)) entries.remove(entry.url);
+				else entries.put(entry.url, entry);
+			}
+		}
+		for (Entry entry : new ArrayList<>(entries.values())) {
+			if (getObjectFile(entry.hash).exists()) addReference(entry);
+			else entries.remove(entry.url);
+		}
+
+		// Compacts the journal and keeps it open to append changes.
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(journalFile)))) {
+			for (Entry entry : entries.values()) out.println(entry);
+		}
+		journalOut = new PrintWriter(new BufferedWriter(new FileWriter(journalFile, true)));
+	}
+
+	/** Checks if the page is in the cache and can be used without contacting the server. */
+	public synchronized boolean isFresh(String url) {
+		Entry entry = entries.get(url);
+		return (entry != null) && (System.currentTimeMillis() - entry.fetched < ttl);
+	}
+
+	/**
+	 * Obtains a page, from disk if it is fresh or the server confirms that it has not changed, or from the server
+	 * otherwise. Responses that are not successful are not cached and are reported with HttpStatusException.
+	 */
+	public Document get(String url, int timeout) throws IOException {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(url);
+			if (entry != null && System.currentTimeMillis() - entry.fetched < ttl) {
+				hits++;
+				return load(touch(entry, entry.fetched));
+			}
+		}
+
+		// Makes a conditional request if the page is in the cache.
+		Connection connection = Jsoup.connect(url).timeout(timeout).ignoreHttpErrors(true);
+		if (entry != null && entry.etag.length() > 0) connection.header("If-None-Match", entry.etag);
+		if (entry != null && entry.lastModified.length() > 0) connection.header("If-Modified-Since", entry.lastModified);
+		Connection.Response response = connection.execute();
+		int status = response.statusCode();
+
+		// If it hasn't changed, uses the cached body.
+		if (status == 304 && entry != null) synchronized (this) {
+			revalidations++;
+			return load(touch(entry, System.currentTimeMillis()));
+		}
+		if (status < 200 || status >= 300) throw new HttpStatusException("HTTP error fetching URL", status, url);
+
+		// Otherwise, stores the new body.
+		byte[] body = response.bodyAsBytes();
+		String hash = hash(body);
+		File objectFile = getObjectFile(hash);
+		if (!objectFile.exists()) {
+			File tempFile = File.createTempFile(hash, ".tmp", objectsDir);
+			try (OutputStream out = new FileOutputStream(tempFile)) {
+				out.write(body);
+			}
+			Files.move(tempFile.toPath(), objectFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		long now = System.currentTimeMillis();
+		String charset = (response.charset() == null) ? "" : response.charset();
+		Entry newEntry = new Entry(url, hash, now, now, body.length, value(response.header("ETag")), value(response.header("Last-Modified")), charset);
+		synchronized (this) {
+			// Writes the body again in the unlikely case it was evicted by another thread in the meantime.
+			if (!objectFile.exists()) try (OutputStream out = new FileOutputStream(objectFile)) {
+				out.write(body);
+			}
+			downloads++;
+			Entry old = entries.put(url, newEntry);
+			if (old != null) removeReference(old);
+			addReference(newEntry);
+			journalOut.println(newEntry);
+			evict();
+			journalOut.flush();
+		}
+
+		// Parses the body as load() does, so a charset declared only in the page (<meta charset>) is detected as well.
+		return Jsoup.parse(new ByteArrayInputStream(body), charset.isEmpty() ? null : charset, url);
+	}
+
+	/** Produces statistics about the use of the cache. */
+	public synchronized String getStatistics() {
+		return String.format("%d pages from cache, %d revalidated, %d downloaded, %d pages (%d KB) in cache", hits, revalidations, downloads, entries.size(), size / 1024);
+	}
+
+	/** Updates the times in which an entry was fetched and last used, recording them in the journal. */
+	private Entry touch(Entry entry, long fetched) {
+		entry.fetched = fetched;
+		entry.used = System.currentTimeMillis();
+		journalOut.println(entry);
+		journalOut.flush();
+		return entry;
+	}
+
+	/** Parses the cached body of an entry. */
+	private Document load(Entry entry) throws IOException {
+		return Jsoup.parse(getObjectFile(entry.hash), entry.charset.isEmpty() ? null : entry.charset, entry.url);
+	}
+
+	/** Evicts the least recently used entries until the bodies fit in the maximum size. */
+	private void evict() {
+		if (size <= maxSize) return;
+		List<Entry> lru = new ArrayList<>(entries.values());
+		Collections.sort(lru, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				return Long.compare(e1.used, e2.used);
+			}
+		});
+		for (int i = 0; i < lru.size() && size > maxSize; i++) {
+			Entry entry = lru.get(i);
+			entries.remove(entry.url);
+			removeReference(entry);
+			journalOut.println(new Entry(entry.url, REMOVED, 0, 0, 0, "", "", ""));
+		}
+	}
+
+	/** Counts a reference to the body of an entry. */
+	private void addReference(Entry entry) {
+		Integer count = references.get(entry.hash);
+		if (count == null) size += entry.size;
+		references.put(entry.hash, (count == null) ? 1 : count + 1);
+	}
+
+	/** Removes a reference to the body of an entry, deleting the body if it's no longer used. */
+	private void removeReference(Entry entry) {
+		Integer count = references.get(entry.hash);
+		if (count == null) return;
+		if (count > 1) references.put(entry.hash, count - 1);
+		else {
+			references.remove(entry.hash);
+			size -= entry.size;
+			getObjectFile(entry.hash).delete();
+		}
+	}
+
+	/** Produces the file that stores the body with the given hash. */
+	private File getObjectFile(String hash) {
+		return new File(objectsDir, hash);
+	}
+
+	/** Computes the SHA-1 hash of a body, in hexadecimal. */
+	private static String hash(byte[] body) {
+		try {
+			StringBuilder builder = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-1").digest(body)) builder.append(String.format("%02x", b));
+			return builder.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Converts a missing header to an empty string and removes tabs, which separate the fields in the journal. */
+	private static String value(String header) {
+		return (header == null) ? "" : header.replace('\t', ' ');
+	}
+
+	/** Closes the journal. */
+	@Override
+	public synchronized void close() throws IOException {
+		journalOut.close();
+	}
+
+	/** A cached page, stored in a line of the journal. */
+	private static class Entry {
+		private String url;
+		private String hash;
+		private long fetched;
+		private long used;
+		private long size;
+		private String etag;
+		private String lastModified;
+		private String charset;
+
+		Entry(String url, String hash, long fetched, long used, long size, String etag, String lastModified, String charset) {
+			this.url = url;
+			this.hash = hash;
+			this.fetched = fetched;
+			this.used = used;
+			this.size = size;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.charset = charset;
+		}
+
+		/** Parses a line of the journal, returning null if it's incomplete (e.g., the program crashed writing it). */
+		static Entry parse(String line) {
+			String[] fields = line.split("\t", -1);
+			if (fields.length != 8) return null;
+			try {
+				return new Entry(fields[0], fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]), fields[5], fields[6], fields[7]);
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return url + '\t' + hash + '\t' + fetched + '\t' + used + '\t' + size + '\t' + etag + '\t' + lastModified + '\t' + charset;
+		}
+	}
+}
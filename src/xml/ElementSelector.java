@@ -0,0 +1,84 @@
+package xml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A selector of XML elements by their names, compiled from the subset of the Jsoup (CSS) selector syntax that can be
+ * checked while streaming a document: element names combined with > (child) or whitespace (descendant), e.g.,
+ * "CURRICULO-VITAE > OUTRA-PRODUCAO > ORIENTACOES-CONCLUIDAS". Names are compared ignoring case, like Jsoup does.
+ * Elements are matched against the path of names of the elements that are open when they start (see matches()).
+ *
+ * @author Vítor E. Silva Souza (vitorsouza@gmail.com)
+ * @version 1.0
+ */
+public class ElementSelector {
+	/** Pattern for the names of the elements in a selector. */
+	private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z_][\\w.:-]*");
+
+	/** The selector, as given. */
+	private String selector;
+
+	/** Names of the elements, from the outermost to the selected one. */
+	private String[] names;
+
+	/** If each element must be a child of the previous one (otherwise, it can be any descendant). */
+	private boolean[] child;
+
+	/** Constructor. */
+	private ElementSelector(String selector, String[] names, boolean[] child) {
+		this.selector = selector;
+		this.names = names;
+		this.child = child;
+	}
+
+	/** Compiles a selector, throwing an IllegalArgumentException if it uses anything other than names, > and whitespace. */
+	public static ElementSelector compile(String selector) {
+		List<String> names = new ArrayList<>();
+		List<Boolean> child = new ArrayList<>();
+		boolean nextIsChild = false;
+		for (String token : selector.trim().replace(">", " > ").split("\\s+")) {
+			if (">".equals(token)) {
+				if (names.isEmpty() || nextIsChild) throw new IllegalArgumentException("Invalid selector: " + selector);
+				nextIsChild = true;
+			}
+			else if (NAME_PATTERN.matcher(token).matches()) {
+				names.add(token);
+				child.add(nextIsChild);
+				nextIsChild = false;
+			}
+			else throw new IllegalArgumentException("Selector not supported while streaming (only element names, > and whitespace are): " + selector);
+		}
+		if (names.isEmpty() || nextIsChild) throw new IllegalArgumentException("Invalid selector: " + selector);
+
+		boolean[] childArray = new boolean[child.size()];
+		for (int i = 0; i < childArray.length; i++) childArray[i] = child.get(i);
+		return new ElementSelector(selector, names.toArray(new String[names.size()]), childArray);
+	}
+
+	/**
+	 * Checks if the last element of the path (names of the open elements, the outermost first) is selected, considering
+	 * only the elements from the given index on (e.g., the element from which the selection is made, as in Jsoup's
+	 * element.select()).
+	 */
+	public boolean matches(List<String> path, int from) {
+		return path.size() > from && matches(path, from, path.size() - 1, names.length - 1);
+	}
+
+	/** Checks if the element at the given index of the path matches the given step and the steps before it. */
+	private boolean matches(List<String> path, int from, int index, int step) {
+		if (!names[step].equalsIgnoreCase(path.get(index))) return false;
+		if (step == 0) return true;
+		if (child[step]) return index > from && matches(path, from, index - 1, step - 1);
+		for (int i = index - 1; i >= from; i--)
+			if (matches(path, from, i, step - 1)) return true;
+		return false;
+	}
+
+	/** @see java.lang.Object#toString() */
+	@Override
+	public String toString() {
+		return selector;
+	}
+}